@@ -0,0 +1,25 @@
+package com.example.demo.config;
+
+import com.example.demo.service.CacheService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Subscribes the near cache to the Redis invalidation channel so L1 entries
+ * are dropped when another instance writes or evicts a key.
+ */
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(
+            RedisConnectionFactory connectionFactory, CacheService cacheService) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheService, new ChannelTopic(cacheService.getInvalidationChannel()));
+        return container;
+    }
+}
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.example.demo.config;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.json.jackson.JacksonJsonpMapper;
 import co.elastic.clients.transport.ElasticsearchTransport;
@@ -8,7 +9,15 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.protocol.HttpContext;
+import org.elasticsearch.client.NodeSelector;
 import org.elasticsearch.client.RestClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -17,6 +26,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.elasticsearch.repository.config.EnableElasticsearchRepositories;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Configuration
 @ConditionalOnProperty(name = "elasticsearch.enabled", havingValue = "true")
@@ -29,11 +39,91 @@ public class ElasticsearchConfig {
     @Value("${elasticsearch.port:9200}")
     private int port;
 
+    // Comma-separated node URLs (e.g. http://es1:9200,http://es2:9200); overrides host/port when set
+    @Value("${elasticsearch.hosts:}")
+    private List<String> hosts;
+
+    @Value("${elasticsearch.transport.node-selector:any}")
+    private String nodeSelector;
+
+    @Value("${elasticsearch.transport.max-connections-total:400}")
+    private int maxConnectionsTotal;
+
+    @Value("${elasticsearch.transport.max-connections-per-route:200}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${elasticsearch.transport.keep-alive:60000}")
+    private long keepAliveMs;
+
+    @Value("${elasticsearch.transport.compression:true}")
+    private boolean compression;
+
+    // 0 means one I/O dispatcher thread per available processor
+    @Value("${elasticsearch.transport.io-threads:0}")
+    private int ioThreads;
+
+    @Value("${elasticsearch.transport.connect-timeout:1000}")
+    private int connectTimeoutMs;
+
+    @Value("${elasticsearch.transport.socket-timeout:60000}")
+    private int socketTimeoutMs;
+
+    @Value("${elasticsearch.transport.connection-request-timeout:10000}")
+    private int connectionRequestTimeoutMs;
+
+    /**
+     * RestClient over a sized, metered connection pool. Idle connections are
+     * kept for the configured keep-alive (or less, if the node says so),
+     * request and response bodies are gzip-compressed, and requests are
+     * spread over all configured nodes.
+     */
     @Bean
-    public RestClient restClient() {
-        return RestClient.builder(
-                new HttpHost(host, port))
+    public RestClient restClient(MeterRegistry meterRegistry) throws IOReactorException {
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(ioThreads > 0 ? ioThreads : Runtime.getRuntime().availableProcessors())
+                .setSoKeepAlive(true)
                 .build();
+        MeteredConnectionManager connectionManager = new MeteredConnectionManager(
+                new DefaultConnectingIOReactor(ioReactorConfig), meterRegistry);
+        connectionManager.setMaxTotal(maxConnectionsTotal);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+        return RestClient.builder(httpHosts())
+                .setNodeSelector(nodeSelector())
+                .setCompressionEnabled(compression)
+                .setRequestConfigCallback(requestConfig -> requestConfig
+                        .setConnectTimeout(connectTimeoutMs)
+                        .setSocketTimeout(socketTimeoutMs)
+                        .setConnectionRequestTimeout(connectionRequestTimeoutMs))
+                .setHttpClientConfigCallback(httpClient -> httpClient
+                        .setConnectionManager(connectionManager)
+                        .setKeepAliveStrategy(this::keepAliveDuration))
+                .build();
+    }
+
+    private HttpHost[] httpHosts() {
+        List<HttpHost> httpHosts = hosts.stream()
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .map(HttpHost::create)
+                .toList();
+        return httpHosts.isEmpty()
+                ? new HttpHost[] { new HttpHost(host, port) }
+                : httpHosts.toArray(new HttpHost[0]);
+    }
+
+    private NodeSelector nodeSelector() {
+        return switch (nodeSelector) {
+            case "any" -> NodeSelector.ANY;
+            case "skip-dedicated-masters" -> NodeSelector.SKIP_DEDICATED_MASTERS;
+            default -> throw new IllegalArgumentException(
+                    "Unknown elasticsearch.transport.node-selector: " + nodeSelector);
+        };
+    }
+
+    private long keepAliveDuration(HttpResponse response, HttpContext context) {
+        long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+        return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAliveMs) : keepAliveMs;
     }
 
     @Bean
@@ -53,14 +143,24 @@ public class ElasticsearchConfig {
     }
 
     @Bean
-    public ElasticsearchTransport elasticsearchTransport() {
+    public ElasticsearchTransport elasticsearchTransport(RestClient restClient) {
         return new RestClientTransport(
-                restClient(),
+                restClient,
                 jacksonJsonpMapper());
     }
 
     @Bean
-    public ElasticsearchClient elasticsearchClient() {
-        return new ElasticsearchClient(elasticsearchTransport());
+    public ElasticsearchClient elasticsearchClient(ElasticsearchTransport elasticsearchTransport) {
+        return new ElasticsearchClient(elasticsearchTransport);
+    }
+
+    /**
+     * Non-blocking client over the same transport: requests return a
+     * CompletableFuture that completes on the RestClient's I/O threads, so
+     * callers do not hold a thread for the round trip.
+     */
+    @Bean
+    public ElasticsearchAsyncClient elasticsearchAsyncClient(ElasticsearchTransport elasticsearchTransport) {
+        return new ElasticsearchAsyncClient(elasticsearchTransport);
     }
-}
\ No newline at end of file
+}
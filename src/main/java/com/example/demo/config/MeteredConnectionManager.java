@@ -0,0 +1,75 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.nio.NHttpClientConnection;
+import org.apache.http.nio.reactor.ConnectingIOReactor;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Connection pool for the Elasticsearch RestClient that reports its
+ * utilization (leased, pending, available and max connections) as gauges
+ * and the time each request waits to lease a connection as a timer, so
+ * queueing on the pool shows up before it shows up as latency.
+ */
+public class MeteredConnectionManager extends PoolingNHttpClientConnectionManager {
+
+    private static final String POOL_METRIC = "elasticsearch.client.pool.connections";
+    private static final String WAIT_METRIC = "elasticsearch.client.pool.wait";
+
+    private final Timer acquiredWaits;
+    private final Timer failedWaits;
+
+    public MeteredConnectionManager(ConnectingIOReactor ioReactor, MeterRegistry meterRegistry) {
+        super(ioReactor);
+        registerGauge(meterRegistry, "leased", manager -> manager.getTotalStats().getLeased());
+        registerGauge(meterRegistry, "pending", manager -> manager.getTotalStats().getPending());
+        registerGauge(meterRegistry, "available", manager -> manager.getTotalStats().getAvailable());
+        registerGauge(meterRegistry, "max", manager -> manager.getTotalStats().getMax());
+        this.acquiredWaits = Timer.builder(WAIT_METRIC).tag("result", "acquired").register(meterRegistry);
+        this.failedWaits = Timer.builder(WAIT_METRIC).tag("result", "failed").register(meterRegistry);
+    }
+
+    @Override
+    public Future<NHttpClientConnection> requestConnection(HttpRoute route, Object state, long connectTimeout,
+            long leaseTimeout, TimeUnit timeUnit, FutureCallback<NHttpClientConnection> callback) {
+        long start = System.nanoTime();
+        return super.requestConnection(route, state, connectTimeout, leaseTimeout, timeUnit,
+                new FutureCallback<>() {
+                    @Override
+                    public void completed(NHttpClientConnection connection) {
+                        acquiredWaits.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        if (callback != null) {
+                            callback.completed(connection);
+                        }
+                    }
+
+                    @Override
+                    public void failed(Exception e) {
+                        failedWaits.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        if (callback != null) {
+                            callback.failed(e);
+                        }
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        if (callback != null) {
+                            callback.cancelled();
+                        }
+                    }
+                });
+    }
+
+    private void registerGauge(MeterRegistry meterRegistry, String state,
+            ToDoubleFunction<MeteredConnectionManager> value) {
+        Gauge.builder(POOL_METRIC, this, value).tag("state", state).register(meterRegistry);
+    }
+}
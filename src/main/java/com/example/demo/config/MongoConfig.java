@@ -13,6 +13,9 @@ import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
 
 @Configuration
 @EnableMongoRepositories(basePackages = "com.example.demo.repository", excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = {
@@ -40,4 +43,15 @@ public class MongoConfig extends AbstractMongoClientConfiguration {
     public MongoTemplate mongoTemplate() throws Exception {
         return new MongoTemplate(mongoClient(), getDatabaseName());
     }
+
+    /**
+     * Lets {@link MongoTransactionRunner} commit a product configuration and
+     * its outbox event together. Requires a replica set or sharded cluster,
+     * so it is only created with mongodb.transactions.enabled=true.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "mongodb.transactions.enabled", havingValue = "true")
+    public MongoTransactionManager transactionManager(MongoDatabaseFactory databaseFactory) {
+        return new MongoTransactionManager(databaseFactory);
+    }
 }
\ No newline at end of file
@@ -1,61 +1,91 @@
 package com.example.demo.config;
 
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.data.mongodb.core.MongoTemplate;
+import org.bson.Document;
+import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.mongodb.core.index.Index;
-import org.springframework.data.mongodb.core.index.IndexOperations;
-import org.springframework.data.mongodb.core.index.IndexResolver;
-import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
-import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
-import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
-import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
 
+import com.example.demo.config.MongoIndexManager.CoveredQuery;
+import com.example.demo.config.MongoIndexManager.ManagedIndex;
 import com.example.demo.model.Order;
 import com.example.demo.model.ProductConfig;
+import com.example.demo.model.ProductConfigOutboxEvent;
 
-@Configuration
-public class MongoIndexConfig {
+import java.util.List;
 
-    private final MongoTemplate mongoTemplate;
-    private final MongoMappingContext mongoMappingContext;
+/**
+ * Declares the MongoDB indexes of the application and the hot queries they
+ * must cover. {@link MongoIndexReconciler} builds whatever is missing after
+ * startup and keeps the readiness probe down until the critical indexes
+ * exist. Automatic index creation from mapping annotations is disabled, so
+ * every index must be declared here.
+ */
+public final class MongoIndexConfig {
 
-    public MongoIndexConfig(MongoTemplate mongoTemplate, MongoMappingContext mongoMappingContext) {
-        this.mongoTemplate = mongoTemplate;
-        this.mongoMappingContext = mongoMappingContext;
+    private static final String COMPLETED = "COMPLETED";
+
+    private MongoIndexConfig() {
+    }
+
+    public static List<ManagedIndex> indexes() {
+        return List.of(
+                // Order collection
+                new ManagedIndex(Order.class, new Index().on("orderDate", Direction.ASC)),
+                new ManagedIndex(Order.class, new Index().on("status", Direction.ASC)),
+                new ManagedIndex(Order.class, new Index().on("productId", Direction.ASC)),
+                new ManagedIndex(Order.class, new Index()
+                        .on("orderDate", Direction.ASC)
+                        .on("status", Direction.ASC)
+                        .on("productId", Direction.ASC)),
+                // Serves distinct("productId", {status}) as a covered DISTINCT_SCAN; also the
+                // index findDistinctActiveProductsWithHint hints
+                ManagedIndex.critical(Order.class, new Index()
+                        .on("status", Direction.ASC)
+                        .on("productId", Direction.ASC)),
+                // Completed orders only; status stays in the key so a status predicate
+                // is answered from the index rather than re-checked on the document
+                ManagedIndex.critical(Order.class, new Index()
+                        .on("productId", Direction.ASC)
+                        .on("status", Direction.ASC)
+                        .named("productId_1_status_1_completed")
+                        .partial(PartialIndexFilter.of(Criteria.where("status").is(COMPLETED)))),
+                // Keyset pagination of orders by (productId, _id), see MongoDbOrderService
+                new ManagedIndex(Order.class, new Index()
+                        .on("productId", Direction.ASC)
+                        .on("_id", Direction.ASC)),
+
+                // ProductConfig collection
+                new ManagedIndex(ProductConfig.class, new Index().on("productId", Direction.ASC)),
+                new ManagedIndex(ProductConfig.class, new Index().on("enabled", Direction.ASC)),
+                new ManagedIndex(ProductConfig.class, new Index().on("startDate", Direction.ASC)),
+                new ManagedIndex(ProductConfig.class, new Index().on("endDate", Direction.ASC)),
+                ManagedIndex.critical(ProductConfig.class, new Index()
+                        .on("productId", Direction.ASC)
+                        .on("enabled", Direction.ASC)
+                        .on("startDate", Direction.ASC)
+                        .on("endDate", Direction.ASC)),
+
+                // ProductConfigOutboxEvent collection (each sink's relay polls its pending events
+                // in _id order)
+                ManagedIndex.critical(ProductConfigOutboxEvent.class, new Index()
+                        .on("redis.status", Direction.ASC)
+                        .on("_id", Direction.ASC)
+                        .named("redis_status_id_idx")),
+                ManagedIndex.critical(ProductConfigOutboxEvent.class, new Index()
+                        .on("elasticsearch.status", Direction.ASC)
+                        .on("_id", Direction.ASC)
+                        .named("elasticsearch_status_id_idx")));
     }
 
-    @Bean
-    public boolean createIndexes() {
-        // Create indexes for Order collection
-        IndexOperations orderIndexOps = mongoTemplate.indexOps(Order.class);
-        orderIndexOps.ensureIndex(new Index().on("orderDate", org.springframework.data.domain.Sort.Direction.ASC));
-        orderIndexOps.ensureIndex(new Index().on("status", org.springframework.data.domain.Sort.Direction.ASC));
-        orderIndexOps.ensureIndex(new Index().on("productId", org.springframework.data.domain.Sort.Direction.ASC));
-
-        // Create indexes for ProductConfig collection
-        IndexOperations productConfigIndexOps = mongoTemplate.indexOps(ProductConfig.class);
-        productConfigIndexOps
-                .ensureIndex(new Index().on("productId", org.springframework.data.domain.Sort.Direction.ASC));
-        productConfigIndexOps
-                .ensureIndex(new Index().on("enabled", org.springframework.data.domain.Sort.Direction.ASC));
-        productConfigIndexOps
-                .ensureIndex(new Index().on("startDate", org.springframework.data.domain.Sort.Direction.ASC));
-        productConfigIndexOps
-                .ensureIndex(new Index().on("endDate", org.springframework.data.domain.Sort.Direction.ASC));
-
-        // Create compound indexes
-        orderIndexOps.ensureIndex(new Index()
-                .on("orderDate", org.springframework.data.domain.Sort.Direction.ASC)
-                .on("status", org.springframework.data.domain.Sort.Direction.ASC)
-                .on("productId", org.springframework.data.domain.Sort.Direction.ASC));
-
-        productConfigIndexOps.ensureIndex(new Index()
-                .on("productId", org.springframework.data.domain.Sort.Direction.ASC)
-                .on("enabled", org.springframework.data.domain.Sort.Direction.ASC)
-                .on("startDate", org.springframework.data.domain.Sort.Direction.ASC)
-                .on("endDate", org.springframework.data.domain.Sort.Direction.ASC));
-
-        return true;
+    public static List<CoveredQuery> coveredQueries() {
+        Document completed = new Document("status", COMPLETED);
+        return List.of(
+                // OrderRepositoryImpl.findDistinctActiveProductsWithMongoDistinct
+                CoveredQuery.distinct("distinct productId of completed orders", Order.class, "productId",
+                        completed),
+                // OrderRepositoryImpl.findDistinctActiveProductsOptimized
+                CoveredQuery.find("productId of completed orders", Order.class, completed,
+                        new Document("productId", 1).append("_id", 0)));
     }
-}
\ No newline at end of file
+}
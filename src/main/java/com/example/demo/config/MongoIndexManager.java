@@ -0,0 +1,212 @@
+package com.example.demo.config;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies declared indexes that are missing and checks, from {@code explain}
+ * output, that the declared hot queries are answered from an index alone:
+ * no documents examined and no FETCH or COLLSCAN stage in the winning plan.
+ */
+@Component
+public class MongoIndexManager {
+    private static final Logger logger = LoggerFactory.getLogger(MongoIndexManager.class);
+
+    private static final Set<String> DOCUMENT_STAGES = Set.of("FETCH", "COLLSCAN");
+
+    /**
+     * An index to keep on the collection of the given entity. The application
+     * is not ready to serve traffic until its critical indexes exist.
+     */
+    public record ManagedIndex(Class<?> entity, IndexDefinition index, boolean critical) {
+
+        public ManagedIndex(Class<?> entity, IndexDefinition index) {
+            this(entity, index, false);
+        }
+
+        public static ManagedIndex critical(Class<?> entity, IndexDefinition index) {
+            return new ManagedIndex(entity, index, true);
+        }
+    }
+
+    /**
+     * A query that must be covered, as the command {@code explain} runs
+     * (a {@code find} or {@code distinct} without the collection name).
+     */
+    public record CoveredQuery(String name, Class<?> entity, Document command) {
+
+        public static CoveredQuery distinct(String name, Class<?> entity, String key, Document filter) {
+            return new CoveredQuery(name, entity, new Document("key", key).append("query", filter));
+        }
+
+        public static CoveredQuery find(String name, Class<?> entity, Document filter, Document projection) {
+            return new CoveredQuery(name, entity, new Document("filter", filter).append("projection", projection));
+        }
+    }
+
+    private final MongoTemplate mongoTemplate;
+
+    @Autowired
+    public MongoIndexManager(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Returns the declared indexes that have no index with the same keys and
+     * partial filter on their collection, in declaration order.
+     */
+    public List<ManagedIndex> findMissing(List<ManagedIndex> indexes) {
+        Map<String, Set<String>> existingByCollection = new HashMap<>();
+        List<ManagedIndex> missing = new ArrayList<>();
+        for (ManagedIndex managed : indexes) {
+            String collection = mongoTemplate.getCollectionName(managed.entity());
+            Set<String> existing = existingByCollection.computeIfAbsent(collection, this::existingSignatures);
+            Object partialFilter = managed.index().getIndexOptions().get("partialFilterExpression");
+            if (!existing.contains(signature(managed.index().getIndexKeys(), partialFilter))) {
+                missing.add(managed);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Creates the index and returns whether it now exists. The call blocks
+     * until the server has finished the build.
+     */
+    public boolean ensureIndex(ManagedIndex managed) {
+        try {
+            String name = mongoTemplate.indexOps(managed.entity()).ensureIndex(managed.index());
+            logger.info("Ensured index {} on {}", name, mongoTemplate.getCollectionName(managed.entity()));
+            return true;
+        } catch (Exception e) {
+            logger.error("Failed to create index {}: {}", describe(managed), e.getMessage());
+            return false;
+        }
+    }
+
+    public String describe(ManagedIndex managed) {
+        Object partialFilter = managed.index().getIndexOptions().get("partialFilterExpression");
+        return mongoTemplate.getCollectionName(managed.entity()) + " " + managed.index().getIndexKeys().toJson()
+                + (partialFilter != null ? " partial" : "");
+    }
+
+    /**
+     * Progress of the index builds currently running on the server, as
+     * reported by {@code currentOp}. Empty if none are running or the user
+     * may not run {@code currentOp}.
+     */
+    public List<String> currentBuildProgress() {
+        try {
+            Document currentOp = mongoTemplate.getMongoDatabaseFactory().getMongoDatabase("admin")
+                    .runCommand(new Document("currentOp", 1)
+                            .append("command.createIndexes", new Document("$exists", true)));
+            List<String> progress = new ArrayList<>();
+            for (Object operation : currentOp.getList("inprog", Object.class, List.of())) {
+                Document op = (Document) operation;
+                if (op.getString("msg") != null) {
+                    progress.add(op.getString("ns") + ": " + op.getString("msg"));
+                }
+            }
+            return progress;
+        } catch (Exception e) {
+            logger.debug("Cannot read index build progress: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Explains each query with executionStats and returns the names of those
+     * that are not covered, or whose plan could not be read.
+     */
+    public List<String> findUncovered(List<CoveredQuery> queries) {
+        List<String> uncovered = new ArrayList<>();
+        for (CoveredQuery query : queries) {
+            try {
+                Document explain = mongoTemplate.getDb().runCommand(new Document("explain", command(query))
+                        .append("verbosity", "executionStats"));
+                Document executionStats = explain.get("executionStats", Document.class);
+                Document queryPlanner = explain.get("queryPlanner", Document.class);
+                if (executionStats == null || queryPlanner == null) {
+                    logger.warn("Cannot verify coverage of {}: no executionStats in explain output", query.name());
+                    uncovered.add(query.name());
+                    continue;
+                }
+
+                long docsExamined = ((Number) executionStats.get("totalDocsExamined")).longValue();
+                List<String> stages = new ArrayList<>();
+                collectStages(winningPlan(queryPlanner), stages);
+                boolean covered = docsExamined == 0 && stages.stream().noneMatch(DOCUMENT_STAGES::contains);
+                if (covered) {
+                    logger.info("Query {} is covered (stages {})", query.name(), stages);
+                } else {
+                    logger.warn("Query {} is not covered: totalDocsExamined={}, stages {}",
+                            query.name(), docsExamined, stages);
+                    uncovered.add(query.name());
+                }
+            } catch (Exception e) {
+                logger.warn("Cannot verify coverage of {}: {}", query.name(), e.getMessage());
+                uncovered.add(query.name());
+            }
+        }
+        return uncovered;
+    }
+
+    private Set<String> existingSignatures(String collection) {
+        Set<String> signatures = new HashSet<>();
+        for (Document index : mongoTemplate.getCollection(collection).listIndexes()) {
+            signatures.add(signature(index.get("key", Document.class), index.get("partialFilterExpression")));
+        }
+        return signatures;
+    }
+
+    // Key order matters and the server may return directions as doubles
+    private static String signature(Document keys, Object partialFilter) {
+        StringBuilder signature = new StringBuilder();
+        keys.forEach((field, direction) -> signature.append(field).append(':')
+                .append(direction instanceof Number number ? number.intValue() : direction).append(','));
+        if (partialFilter instanceof Document filter) {
+            signature.append('|').append(filter.toJson());
+        }
+        return signature.toString();
+    }
+
+    private Document command(CoveredQuery query) {
+        String commandName = query.command().containsKey("key") ? "distinct" : "find";
+        Document command = new Document(commandName, mongoTemplate.getCollectionName(query.entity()));
+        command.putAll(query.command());
+        return command;
+    }
+
+    // The slot-based engine nests the classic plan tree under queryPlan
+    private static Document winningPlan(Document queryPlanner) {
+        Document winningPlan = queryPlanner.get("winningPlan", Document.class);
+        Document queryPlan = winningPlan.get("queryPlan", Document.class);
+        return queryPlan != null ? queryPlan : winningPlan;
+    }
+
+    private static void collectStages(Document plan, List<String> stages) {
+        stages.add(plan.getString("stage"));
+        Document inputStage = plan.get("inputStage", Document.class);
+        if (inputStage != null) {
+            collectStages(inputStage, stages);
+        }
+        List<?> inputStages = plan.get("inputStages", List.class);
+        if (inputStages != null) {
+            for (Object child : inputStages) {
+                collectStages((Document) child, stages);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.demo.config;
+
+import com.example.demo.config.MongoIndexManager.ManagedIndex;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the indexes declared in {@link MongoIndexConfig} on a background
+ * thread once the application has started, so a long build on a large
+ * collection does not hold up boot. Only indexes missing from the server are
+ * built, critical ones first, with progress read from {@code currentOp}.
+ * As the {@code mongoIndexes} health indicator (part of the readiness group)
+ * it reports OUT_OF_SERVICE until every critical index exists and, with
+ * {@code mongodb.indexes.verify=fail}, the hot queries are covered.
+ * Failed builds are retried after {@code mongodb.indexes.retry-delay}.
+ */
+@Component("mongoIndexes")
+public class MongoIndexReconciler implements HealthIndicator {
+    private static final Logger logger = LoggerFactory.getLogger(MongoIndexReconciler.class);
+
+    private final MongoIndexManager indexManager;
+    private final String verifyMode;
+    private final long progressIntervalMs;
+    private final long retryDelayMs;
+    private final ScheduledExecutorService executor;
+
+    private volatile String phase = "pending";
+    private volatile boolean criticalIndexesReady;
+    private volatile boolean coverageVerified;
+    private volatile int missingCount;
+    private volatile String currentIndex;
+    private volatile List<String> buildProgress = List.of();
+    private volatile List<String> uncoveredQueries = List.of();
+    private final List<String> builtIndexes = new CopyOnWriteArrayList<>();
+    private final List<String> failedIndexes = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public MongoIndexReconciler(MongoIndexManager indexManager,
+            @Value("${mongodb.indexes.verify:warn}") String verifyMode,
+            @Value("${mongodb.indexes.progress-interval:10000}") long progressIntervalMs,
+            @Value("${mongodb.indexes.retry-delay:60000}") long retryDelayMs) {
+        this.indexManager = indexManager;
+        this.verifyMode = verifyMode;
+        this.progressIntervalMs = progressIntervalMs;
+        this.retryDelayMs = retryDelayMs;
+        AtomicInteger threadCount = new AtomicInteger();
+        // One thread builds, the other polls build progress while it does
+        this.executor = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "mongo-index-reconciler-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        executor.execute(this::reconcile);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void reconcile() {
+        try {
+            phase = "diffing";
+            List<ManagedIndex> missing = new ArrayList<>(indexManager.findMissing(MongoIndexConfig.indexes()));
+            missing.sort(Comparator.comparing(ManagedIndex::critical).reversed());
+            missingCount = missing.size();
+            failedIndexes.clear();
+            logger.info("Index reconciliation: {} of {} declared indexes missing",
+                    missing.size(), MongoIndexConfig.indexes().size());
+
+            criticalIndexesReady = missing.stream().noneMatch(ManagedIndex::critical);
+            build(missing);
+
+            phase = "verifying";
+            verifyCoverage();
+
+            phase = failedIndexes.isEmpty() ? "complete" : "incomplete";
+            logger.info("Index reconciliation {}: built {}, failed {}", phase, builtIndexes.size(),
+                    failedIndexes.size());
+        } catch (Exception e) {
+            phase = "incomplete";
+            logger.error("Index reconciliation failed: {}", e.getMessage(), e);
+        }
+
+        if (!"complete".equals(phase)) {
+            executor.schedule(this::reconcile, retryDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void build(List<ManagedIndex> missing) {
+        phase = "building";
+        ScheduledFuture<?> progressPoller = executor.scheduleWithFixedDelay(this::pollProgress,
+                progressIntervalMs, progressIntervalMs, TimeUnit.MILLISECONDS);
+        try {
+            boolean criticalFailed = false;
+            for (int i = 0; i < missing.size(); i++) {
+                ManagedIndex index = missing.get(i);
+                String description = indexManager.describe(index);
+                currentIndex = description;
+                logger.info("Building index {}/{}: {}", i + 1, missing.size(), description);
+                if (indexManager.ensureIndex(index)) {
+                    builtIndexes.add(description);
+                } else {
+                    failedIndexes.add(description);
+                    criticalFailed |= index.critical();
+                }
+                // Missing indexes are sorted critical first
+                boolean moreCritical = i + 1 < missing.size() && missing.get(i + 1).critical();
+                if (index.critical() && !moreCritical && !criticalFailed) {
+                    criticalIndexesReady = true;
+                    logger.info("Critical indexes ready");
+                }
+            }
+        } finally {
+            progressPoller.cancel(false);
+            currentIndex = null;
+            buildProgress = List.of();
+        }
+    }
+
+    private void pollProgress() {
+        buildProgress = indexManager.currentBuildProgress();
+        buildProgress.forEach(progress -> logger.info("Index build progress: {}", progress));
+    }
+
+    private void verifyCoverage() {
+        if ("off".equals(verifyMode)) {
+            coverageVerified = true;
+            return;
+        }
+        uncoveredQueries = indexManager.findUncovered(MongoIndexConfig.coveredQueries());
+        coverageVerified = uncoveredQueries.isEmpty();
+        if (!coverageVerified) {
+            logger.warn("Hot queries not covered by an index: {}", uncoveredQueries);
+        }
+    }
+
+    public boolean isReady() {
+        return criticalIndexesReady && (coverageVerified || !"fail".equals(verifyMode));
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = isReady() ? Health.up() : Health.outOfService();
+        builder.withDetail("phase", phase)
+                .withDetail("criticalIndexesReady", criticalIndexesReady)
+                .withDetail("missing", missingCount)
+                .withDetail("built", List.copyOf(builtIndexes))
+                .withDetail("failed", List.copyOf(failedIndexes));
+        if (currentIndex != null) {
+            builder.withDetail("building", currentIndex).withDetail("progress", buildProgress);
+        }
+        if (!uncoveredQueries.isEmpty()) {
+            builder.withDetail("uncoveredQueries", uncoveredQueries);
+        }
+        return builder.build();
+    }
+}
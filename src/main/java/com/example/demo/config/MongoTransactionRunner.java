@@ -0,0 +1,46 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Supplier;
+
+/**
+ * Runs a group of MongoDB writes in one multi-document transaction when
+ * {@code mongodb.transactions.enabled=true} (replica set or sharded cluster
+ * only), and as plain sequential writes otherwise, so the same code works
+ * against a standalone mongod.
+ */
+@Component
+public class MongoTransactionRunner {
+
+    // Null when transactions are disabled and no transaction manager exists
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public MongoTransactionRunner(ObjectProvider<MongoTransactionManager> transactionManager) {
+        MongoTransactionManager manager = transactionManager.getIfAvailable();
+        this.transactionTemplate = manager != null ? new TransactionTemplate(manager) : null;
+    }
+
+    public boolean isTransactional() {
+        return transactionTemplate != null;
+    }
+
+    public <T> T execute(Supplier<T> action) {
+        if (transactionTemplate == null) {
+            return action.get();
+        }
+        return transactionTemplate.execute(status -> action.get());
+    }
+
+    public void run(Runnable action) {
+        execute(() -> {
+            action.run();
+            return null;
+        });
+    }
+}
@@ -1,15 +1,28 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.OrderPageDTO;
+import com.example.demo.dto.ProductSummaryDTO;
 import com.example.demo.model.Order;
+import com.example.demo.model.ProductOrderSummary;
 import com.example.demo.service.MongoDbOrderService;
+import com.example.demo.service.ProductOrderSummaryService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Controller for accessing orders for active products.
@@ -21,15 +34,29 @@ import java.util.Map;
 public class ActiveOrderController {
     private static final Logger logger = LoggerFactory.getLogger(ActiveOrderController.class);
 
+    private static final String NDJSON = "application/x-ndjson";
+
     private final MongoDbOrderService orderService;
+    private final ProductOrderSummaryService summaryService;
+    private final ObjectMapper objectMapper;
+    private final int defaultPageSize;
+    private final int maxPageSize;
 
     @Autowired
-    public ActiveOrderController(MongoDbOrderService orderService) {
+    public ActiveOrderController(MongoDbOrderService orderService, ProductOrderSummaryService summaryService,
+            ObjectMapper objectMapper,
+            @Value("${orders.page.default-size:500}") int defaultPageSize,
+            @Value("${orders.page.max-size:5000}") int maxPageSize) {
         this.orderService = orderService;
+        this.summaryService = summaryService;
+        this.objectMapper = objectMapper;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     /**
-     * Returns all orders for active products.
+     * Returns all orders for active products in a single response. For large
+     * result sets use /active/page or /active/stream.
      */
     @GetMapping("/active")
     public ResponseEntity<List<Order>> getOrdersForActiveProducts() {
@@ -44,6 +71,71 @@ public class ActiveOrderController {
         return ResponseEntity.ok(orders);
     }
 
+    /**
+     * Returns one page of orders for active products, ordered by
+     * (productId, _id). Pass the nextCursor of a page as cursor to get the
+     * one after it.
+     */
+    @GetMapping("/active/page")
+    public ResponseEntity<OrderPageDTO> getOrdersForActiveProductsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        long startTime = System.currentTimeMillis();
+        int pageSize = Math.max(1, Math.min(size != null ? size : defaultPageSize, maxPageSize));
+        logger.info("API request for a page of {} orders of active products", pageSize);
+
+        OrderPageDTO page;
+        try {
+            page = orderService.getOrdersForActiveProductsPage(cursor, pageSize);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected page request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+
+        long duration = System.currentTimeMillis() - startTime;
+        logger.info("Returned page of {} orders for active products in {} ms", page.getSize(), duration);
+
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Streams all orders for active products as newline-delimited JSON,
+     * writing each order as the MongoDB cursor yields it so memory use does
+     * not grow with the number of orders. Written on the request thread so
+     * long streams are not cut off by the async request timeout.
+     */
+    @GetMapping(value = "/active/stream", produces = NDJSON)
+    public void streamOrdersForActiveProducts(HttpServletResponse response) throws IOException {
+        long startTime = System.currentTimeMillis();
+        logger.info("API request to stream orders of active products");
+
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        OutputStream out = response.getOutputStream();
+        try {
+            long count = orderService.streamOrdersForActiveProducts(order -> {
+                try {
+                    boolean first = !response.isCommitted();
+                    out.write(objectMapper.writeValueAsBytes(order));
+                    out.write('\n');
+                    // Send the first order right away; later ones go out as the buffer fills
+                    if (first) {
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+
+            long duration = System.currentTimeMillis() - startTime;
+            logger.info("Streamed {} orders for active products in {} ms", count, duration);
+        } catch (UncheckedIOException e) {
+            // Usually the client went away; the cursor is already closed
+            logger.warn("Stopped streaming orders of active products: {}", e.getCause().getMessage());
+        }
+    }
+
     /**
      * Returns all active products that have orders.
      */
@@ -77,35 +169,110 @@ public class ActiveOrderController {
     }
 
     /**
-     * Returns counts for a given active product.
+     * Returns counts for a given active product, read from its pre-aggregated
+     * order summary, or with {@code source=aggregation} computed on demand by
+     * a MongoDB aggregation (adds average and amount percentiles). Products
+     * without a summary yet fall back to the aggregation.
      */
     @GetMapping("/product/{productId}/stats")
-    public ResponseEntity<Map<String, Object>> getProductOrderStats(@PathVariable String productId) {
+    public ResponseEntity<Map<String, Object>> getProductOrderStats(@PathVariable String productId,
+            @RequestParam(defaultValue = "summary") String source) {
         long startTime = System.currentTimeMillis();
-        logger.info("API request for order stats of product ID: {}", productId);
-
-        List<Order> orders = orderService.getOrdersForProduct(productId);
+        logger.info("API request for order stats of product ID: {} (source: {})", productId, source);
 
-        // Only process if the product is active (otherwise, orders will be empty)
-        if (orders.isEmpty()) {
+        // Inactive products report no stats
+        if (!orderService.isProductActive(productId)) {
             return ResponseEntity.ok(Map.of(
                     "productId", productId,
                     "active", false,
                     "orderCount", 0));
         }
 
-        // Calculate some basic stats
-        double totalAmount = orders.stream()
-                .mapToDouble(Order::getAmount)
-                .sum();
+        Map<String, Object> response = "aggregation".equals(source) ? null : summaryStats(productId);
+        if (response == null) {
+            response = aggregatedStats(productId);
+        }
+        // Active products without orders
+        if (response == null) {
+            return ResponseEntity.ok(Map.of(
+                    "productId", productId,
+                    "active", true,
+                    "orderCount", 0));
+        }
+
+        long duration = System.currentTimeMillis() - startTime;
+        logger.info("Read stats for product ID {} in {} ms", productId, duration);
+
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Returns order statistics for each of the given products that is active,
+     * computed by a single MongoDB aggregation.
+     */
+    @GetMapping("/products/stats")
+    public ResponseEntity<List<ProductSummaryDTO>> getProductsOrderStats(@RequestParam List<String> productIds) {
+        long startTime = System.currentTimeMillis();
+        logger.info("API request for order stats of {} product IDs", productIds.size());
+
+        List<ProductSummaryDTO> stats = orderService.getProductStats(productIds);
 
         long duration = System.currentTimeMillis() - startTime;
-        logger.info("Calculated stats for product ID {} in {} ms", productId, duration);
+        logger.info("Returned stats for {} products in {} ms", stats.size(), duration);
+
+        return ResponseEntity.ok(stats);
+    }
+
+    private Map<String, Object> summaryStats(String productId) {
+        Optional<ProductOrderSummary> summary = summaryService.getSummary(productId);
+        if (summary.isEmpty()) {
+            return null;
+        }
+
+        ProductOrderSummary stats = summary.get();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("productId", productId);
+        response.put("active", true);
+        response.put("orderCount", stats.getOrderCount());
+        response.put("totalAmount", stats.getTotalAmount());
+        response.put("minAmount", stats.getMinAmount());
+        response.put("maxAmount", stats.getMaxAmount());
+        response.put("lastOrderDate", stats.getLastOrderDate());
+        response.put("countByStatus", stats.getCountByStatus());
+        response.put("amountByStatus", stats.getAmountByStatus());
+        return response;
+    }
+
+    private Map<String, Object> aggregatedStats(String productId) {
+        List<ProductSummaryDTO> summaries = orderService.getProductStats(List.of(productId));
+        if (summaries.isEmpty()) {
+            return null;
+        }
+
+        ProductSummaryDTO stats = summaries.get(0);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("productId", productId);
+        response.put("active", true);
+        response.put("orderCount", stats.getCount());
+        response.put("totalAmount", stats.getTotalAmount());
+        response.put("averageAmount", stats.getAverageAmount());
+        response.put("minAmount", stats.getMinAmount());
+        response.put("maxAmount", stats.getMaxAmount());
+        response.put("p50Amount", stats.getP50Amount());
+        response.put("p95Amount", stats.getP95Amount());
+        response.put("p99Amount", stats.getP99Amount());
+        return response;
+    }
 
+    /**
+     * Recomputes all product order summaries from the orders collection.
+     */
+    @PostMapping("/summaries/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildProductOrderSummaries() {
+        long startTime = System.currentTimeMillis();
+        long summaries = summaryService.rebuild();
         return ResponseEntity.ok(Map.of(
-                "productId", productId,
-                "active", true,
-                "orderCount", orders.size(),
-                "totalAmount", totalAmount));
+                "summaries", summaries,
+                "durationMs", System.currentTimeMillis() - startTime));
     }
-}
\ No newline at end of file
+}
@@ -1,7 +1,9 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.ConsistencyReport;
 import com.example.demo.model.ProductConfig;
 import com.example.demo.service.ProductConfigDualWriteService;
+import com.example.demo.service.ProductConfigOutboxRelay;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,10 +27,13 @@ public class ActiveProductApiController {
     private static final Logger logger = LoggerFactory.getLogger(ActiveProductApiController.class);
 
     private final ProductConfigDualWriteService dualWriteService;
+    private final ProductConfigOutboxRelay outboxRelay;
 
     @Autowired
-    public ActiveProductApiController(ProductConfigDualWriteService dualWriteService) {
+    public ActiveProductApiController(ProductConfigDualWriteService dualWriteService,
+            ProductConfigOutboxRelay outboxRelay) {
         this.dualWriteService = dualWriteService;
+        this.outboxRelay = outboxRelay;
     }
 
     /**
@@ -101,6 +106,15 @@ public class ActiveProductApiController {
                 "Product configuration successfully deleted from MongoDB and Redis"));
     }
 
+    /**
+     * Returns the number of outbox events still waiting to be relayed to Redis
+     * and Elasticsearch, and of events parked after repeated failures.
+     */
+    @GetMapping("/outbox/status")
+    public ResponseEntity<Map<String, Object>> getOutboxStatus() {
+        return ResponseEntity.ok(outboxRelay.getStatus());
+    }
+
     /**
      * Force synchronization of product configurations from MongoDB to Redis.
      */
@@ -126,11 +140,17 @@ public class ActiveProductApiController {
         logger.info("Running consistency check between MongoDB and Redis");
 
         long startTime = System.currentTimeMillis();
-        boolean consistent = dualWriteService.verifyConsistency();
+        ConsistencyReport report = dualWriteService.verifyConsistency();
         long duration = System.currentTimeMillis() - startTime;
 
         return ResponseEntity.ok(Map.of(
-                "consistent", consistent,
+                "consistent", report.isConsistent(),
+                "mongodb_count", report.getMongoCount(),
+                "redis_count", report.getRedisCount(),
+                "divergent_buckets", report.getDivergentBuckets(),
+                "missing_in_redis", report.getMissingInRedis(),
+                "missing_in_mongodb", report.getMissingInMongo(),
+                "mismatched", report.getMismatched(),
                 "check_time", LocalDateTime.now().toString(),
                 "duration_ms", duration));
     }
@@ -1,7 +1,11 @@
 package com.example.demo.controller;
 
+import com.example.demo.service.CacheService;
 import com.example.demo.service.ElasticsearchService;
+import com.example.demo.service.PartitionedOrderSyncService;
+import com.example.demo.service.ProductOrderSummaryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -10,8 +14,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
@@ -22,6 +28,7 @@ import com.example.demo.model.Order;
 import com.example.demo.model.ProductConfig;
 import com.example.demo.repository.OrderESRepository;
 import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.PointInTimeScroller;
 import com.example.demo.repository.ProductConfigESRepository;
 import com.example.demo.repository.ProductConfigRepository;
 
@@ -46,6 +53,15 @@ public class ElasticsearchController {
         @Autowired
         private ElasticsearchClient elasticsearchClient;
 
+        @Autowired
+        private CacheService cacheService;
+
+        @Autowired
+        private PartitionedOrderSyncService partitionedOrderSyncService;
+
+        @Autowired
+        private PointInTimeScroller pointInTimeScroller;
+
         @Autowired
         private OrderRepository orderRepository;
 
@@ -58,6 +74,9 @@ public class ElasticsearchController {
         @Autowired
         private ProductConfigESRepository productConfigESRepository;
 
+        @Autowired
+        private ProductOrderSummaryService summaryService;
+
         @Value("${elasticsearch.host:localhost}")
         private String elasticsearchHost;
 
@@ -70,6 +89,30 @@ public class ElasticsearchController {
                 return ResponseEntity.ok(Map.of("message", "Data synchronized to Elasticsearch"));
         }
 
+        /**
+         * Starts a parallel, checkpointed export of orders in the background.
+         * With resume=true the unfinished partitions of the last export continue.
+         */
+        @PostMapping("/sync/orders/partitioned")
+        public ResponseEntity<Map<String, Object>> startPartitionedOrderSync(
+                        @RequestParam(defaultValue = "true") boolean resume) {
+                if (!partitionedOrderSyncService.start(resume)) {
+                        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", "Order export already running"));
+                }
+                return ResponseEntity.accepted().body(Map.of("message", "Order export started", "resume", resume));
+        }
+
+        @PostMapping("/sync/orders/partitioned/stop")
+        public ResponseEntity<Map<String, String>> stopPartitionedOrderSync() {
+                partitionedOrderSyncService.stop();
+                return ResponseEntity.ok(Map.of("message", "Order export will stop after the current checkpoint"));
+        }
+
+        @GetMapping("/sync/orders/partitioned/status")
+        public ResponseEntity<Map<String, Object>> getPartitionedOrderSyncStatus() {
+                return ResponseEntity.ok(partitionedOrderSyncService.getStatus());
+        }
+
         @GetMapping("/active-products")
         public ResponseEntity<List<String>> getActiveProductsES() {
                 return ResponseEntity.ok(elasticsearchService.findDistinctActiveProductsES());
@@ -102,8 +145,9 @@ public class ElasticsearchController {
                         order.setCreatedAt(LocalDateTime.now());
                         order.setUpdatedAt(LocalDateTime.now());
                         orderRepository.save(order);
+                        summaryService.recordOrder(order);
 
-                        OrderES orderES = OrderES.fromOrder(order);
+                        OrderES orderES = OrderES.fromOrder(order, config);
                         orderESRepository.save(orderES);
 
                         logger.info("Created test product config: {}", config);
@@ -204,36 +248,17 @@ public class ElasticsearchController {
                                         elasticsearchHost,
                                         elasticsearchPort);
 
-                        // Step 1: Get all completed orders
-                        SearchRequest orderRequest = new SearchRequest.Builder()
-                                        .index("orders")
-                                        .query(q -> q
-                                                        .term(t -> t
-                                                                        .field("status.keyword")
-                                                                        .value("COMPLETED")))
-                                        .size(10000)
-                                        .build();
-
-                        SearchResponse<OrderES> orderResponse = elasticsearchClient.search(orderRequest, OrderES.class);
-                        logger.info("Found {} completed orders",
-                                        orderResponse.hits().total() != null ? orderResponse.hits().total().value()
-                                                        : 0);
-
-                        if (orderResponse.hits().hits().isEmpty()) {
-                                logger.warn("No completed orders found");
-                                return ResponseEntity.ok(result);
-                        }
-
-                        // Log a sample hit to verify the format
-                        Hit<OrderES> sampleOrderHit = orderResponse.hits().hits().get(0);
-                        logger.info("Sample order hit: {}", sampleOrderHit.source());
-
+                        // Step 1: Scan all completed orders with a point in time, fetching only productId
                         Set<String> productIds = new HashSet<>();
-                        for (Hit<OrderES> hit : orderResponse.hits().hits()) {
-                                if (hit.source() != null) {
-                                        productIds.add(hit.source().getProductId());
-                                }
-                        }
+                        long completedOrders = pointInTimeScroller.forEachSourceBatch("orders", completedOrdersQuery(),
+                                        List.of("productId"), OrderES.class, orders -> {
+                                                for (OrderES order : orders) {
+                                                        if (order.getProductId() != null) {
+                                                                productIds.add(order.getProductId());
+                                                        }
+                                                }
+                                        });
+                        logger.info("Found {} completed orders", completedOrders);
 
                         if (productIds.isEmpty()) {
                                 logger.warn("No product IDs found in completed orders");
@@ -361,6 +386,26 @@ public class ElasticsearchController {
                 return ResponseEntity.ok(elasticsearchService.findDistinctActiveProductsESNative());
         }
 
+        @GetMapping("/active-products-denormalized")
+        public ResponseEntity<List<String>> getActiveProductsDenormalized() {
+                return ResponseEntity.ok(elasticsearchService.findDistinctActiveProductsDenormalized());
+        }
+
+        @GetMapping("/async/active-products-native")
+        public CompletableFuture<ResponseEntity<List<String>>> getActiveProductsESNativeAsync() {
+                return elasticsearchService.findDistinctActiveProductsESNativeAsync().thenApply(ResponseEntity::ok);
+        }
+
+        @GetMapping("/async/active-products-lookup")
+        public CompletableFuture<ResponseEntity<List<String>>> getActiveProductsLookupAsync() {
+                return elasticsearchService.findDistinctActiveProductsOptimizedAsync().thenApply(ResponseEntity::ok);
+        }
+
+        @GetMapping("/async/active-products-denormalized")
+        public CompletableFuture<ResponseEntity<List<String>>> getActiveProductsDenormalizedAsync() {
+                return elasticsearchService.findDistinctActiveProductsDenormalizedAsync().thenApply(ResponseEntity::ok);
+        }
+
         @GetMapping("/debug/product/{productId}")
         public ResponseEntity<Map<String, Object>> debugProduct(@PathVariable String productId) {
                 return ResponseEntity.ok(elasticsearchService.debugProductConfiguration(productId));
@@ -866,183 +911,164 @@ public class ElasticsearchController {
         @GetMapping("/active-products-superfast")
         public ResponseEntity<List<String>> getActiveProductsSuperfast() {
                 long startTime = System.currentTimeMillis();
-                try {
-                        logger.info("Starting ultra-optimized Elasticsearch query for active products");
-
-                        try {
-                                // Try a basic query to verify connectivity
-                                logger.info("Performing basic query to verify Elasticsearch connectivity");
-                                SearchRequest testRequest = new SearchRequest.Builder()
-                                                .index("orders")
-                                                .size(1)
-                                                .build();
-
-                                SearchResponse<OrderES> testResponse = elasticsearchClient.search(testRequest,
-                                                OrderES.class);
-                                logger.info("Basic connectivity test successful. Found {} hits",
-                                                testResponse.hits().total() != null
-                                                                ? testResponse.hits().total().value()
-                                                                : 0);
-
-                                // OPTIMIZATION: Static cache with time-based expiration
-                                // In a real application, you'd use a proper cache like Caffeine or Redis
-                                // For demo purposes, we're using a static variable with timestamps
-
-                                if (activeProductsCache != null &&
-                                                System.currentTimeMillis()
-                                                                - activeProductsCacheTimestamp < CACHE_DURATION_MS) {
-                                        logger.info("Returning cached result of size {} in {} ms",
-                                                        activeProductsCache.size(),
-                                                        System.currentTimeMillis() - startTime);
-                                        return ResponseEntity.ok(activeProductsCache);
-                                }
-
-                                // Get current date for filtering
-                                LocalDateTime now = LocalDateTime.now();
-                                String formattedDate = now.format(DateTimeFormatter.ISO_DATE_TIME);
-                                logger.info("Using date filter: {}", formattedDate);
-
-                                // Step 1: Get COMPLETED orders from direct query
-                                logger.info("STEP 1: Querying for COMPLETED orders");
-                                String orderQueryJson = "{\"query\":{\"term\":{\"status.keyword\":\"COMPLETED\"}}}";
-
-                                logger.info("Order query JSON: {}", orderQueryJson);
-
-                                SearchRequest orderRequest = new SearchRequest.Builder()
-                                                .index("orders")
-                                                .withJson(new StringReader(orderQueryJson))
-                                                .size(10000)
-                                                .build();
-
-                                logger.info("Submitting order search request");
-                                SearchResponse<OrderES> orderResponse = elasticsearchClient.search(orderRequest,
-                                                OrderES.class);
-
-                                long orderHits = orderResponse.hits().total() != null
-                                                ? orderResponse.hits().total().value()
-                                                : 0;
-                                logger.info("COMPLETED orders query returned {} hits", orderHits);
-
-                                if (orderHits == 0) {
-                                        logger.warn("No COMPLETED orders found. Aborting.");
-                                        return ResponseEntity.ok(new ArrayList<>());
-                                }
-
-                                // Extract product IDs from orders
-                                Set<String> productIds = new HashSet<>();
-                                logger.info("Extracting product IDs from {} orders",
-                                                orderResponse.hits().hits().size());
-
-                                for (Hit<OrderES> hit : orderResponse.hits().hits()) {
-                                        OrderES order = hit.source();
-                                        if (order != null && order.getProductId() != null) {
-                                                logger.info("Found order with ID {} for product ID: {}",
-                                                                order.getOrderId(), order.getProductId());
-                                                productIds.add(order.getProductId());
-                                        }
-                                }
 
-                                logger.info("Extracted {} unique product IDs: {}", productIds.size(), productIds);
-
-                                if (productIds.isEmpty()) {
-                                        logger.warn("No product IDs found in COMPLETED orders. Aborting.");
-                                        return ResponseEntity.ok(new ArrayList<>());
-                                }
-
-                                // Step 2: Query for active products using direct JSON
-                                logger.info("STEP 2: Querying for active product configurations");
-                                List<String> activeProducts = new ArrayList<>();
+                try {
+                        // Served from the two-tier cache (Caffeine near cache backed by Redis); past the
+                        // soft TTL the cached list is returned and reloaded in the background
+                        List<String> activeProducts = cacheService.getOrLoad(
+                                        CacheService.ELASTICSEARCH_SUPERFAST_ACTIVE_PRODUCTS_KEY,
+                                        this::loadActiveProductsSuperfast);
+                        if (activeProducts == null) {
+                                return ResponseEntity.ok(new ArrayList<>());
+                        }
+                        logger.info("Returning {} active products in {} ms", activeProducts.size(),
+                                        System.currentTimeMillis() - startTime);
+                        return ResponseEntity.ok(activeProducts);
+                } catch (Exception e) {
+                        logger.error("Error executing ultra-optimized Elasticsearch query: {}", e.getMessage(), e);
+                        // Return empty list but also include error information
+                        List<String> errorResult = new ArrayList<>();
+                        errorResult.add("ERROR: " + e.getClass().getSimpleName() + " - " + e.getMessage());
+                        return ResponseEntity.ok(errorResult);
+                }
+        }
 
-                                for (String productId : productIds) {
-                                        String configQuery = String.format(
-                                                        "{\"query\":{\"bool\":{\"must\":[" +
-                                                                        "{\"term\":{\"productId.keyword\":\"%s\"}}," +
-                                                                        "{\"term\":{\"enabled\":true}}," +
-                                                                        "{\"range\":{\"startDate\":{\"lte\":\"%s\"}}},"
-                                                                        +
-                                                                        "{\"range\":{\"endDate\":{\"gte\":\"%s\"}}}" +
-                                                                        "]}}}",
-                                                        productId, formattedDate, formattedDate);
+        /**
+         * Runs the ultra-optimized Elasticsearch query for active products.
+         * Returns null when there are no completed orders so that the empty
+         * result is not cached.
+         */
+        private List<String> loadActiveProductsSuperfast() {
+                long startTime = System.currentTimeMillis();
+                logger.info("Starting ultra-optimized Elasticsearch query for active products");
 
-                                        logger.info("Product config query for {}: {}", productId, configQuery);
+                try {
+                        // Try a basic query to verify connectivity
+                        logger.info("Performing basic query to verify Elasticsearch connectivity");
+                        SearchRequest testRequest = new SearchRequest.Builder()
+                                        .index("orders")
+                                        .size(1)
+                                        .build();
 
-                                        SearchRequest configRequest = new SearchRequest.Builder()
-                                                        .index("product_configs")
-                                                        .withJson(new StringReader(configQuery))
-                                                        .build();
+                        SearchResponse<OrderES> testResponse = elasticsearchClient.search(testRequest,
+                                        OrderES.class);
+                        logger.info("Basic connectivity test successful. Found {} hits",
+                                        testResponse.hits().total() != null
+                                                        ? testResponse.hits().total().value()
+                                                        : 0);
 
-                                        SearchResponse<ProductConfigES> configResponse = elasticsearchClient.search(
-                                                        configRequest, ProductConfigES.class);
+                        // Get current date for filtering
+                        LocalDateTime now = LocalDateTime.now();
+                        String formattedDate = now.format(DateTimeFormatter.ISO_DATE_TIME);
+                        logger.info("Using date filter: {}", formattedDate);
 
-                                        long configHits = configResponse.hits().total() != null
-                                                        ? configResponse.hits().total().value()
-                                                        : 0;
+                        // Step 1: Scan COMPLETED orders with a point in time, fetching only productId
+                        logger.info("STEP 1: Scanning COMPLETED orders");
+                        Set<String> productIds = new HashSet<>();
+                        long orderHits = pointInTimeScroller.forEachSourceBatch("orders",
+                                        completedOrdersQuery(), List.of("productId"), OrderES.class, orders -> {
+                                                for (OrderES order : orders) {
+                                                        if (order.getProductId() != null) {
+                                                                productIds.add(order.getProductId());
+                                                        }
+                                                }
+                                        });
+                        logger.info("COMPLETED orders scan returned {} hits", orderHits);
+
+                        if (orderHits == 0) {
+                                logger.warn("No COMPLETED orders found. Aborting.");
+                                return null;
+                        }
 
-                                        logger.info("Product {} has {} active configurations", productId, configHits);
+                        logger.info("Extracted {} unique product IDs: {}", productIds.size(), productIds);
 
-                                        if (configHits > 0) {
-                                                logger.info("Adding active product: {}", productId);
-                                                activeProducts.add(productId);
-                                        }
-                                }
+                        if (productIds.isEmpty()) {
+                                logger.warn("No product IDs found in COMPLETED orders. Aborting.");
+                                return null;
+                        }
 
-                                // Explicitly check TEST-PROD-DIRECT
-                                String testProductId = "TEST-PROD-DIRECT";
-                                logger.info("Explicitly checking test product: {}", testProductId);
+                        // Step 2: Query for active products using direct JSON
+                        logger.info("STEP 2: Querying for active product configurations");
+                        List<String> activeProducts = new ArrayList<>();
 
-                                String testQuery = String.format(
+                        for (String productId : productIds) {
+                                String configQuery = String.format(
                                                 "{\"query\":{\"bool\":{\"must\":[" +
                                                                 "{\"term\":{\"productId.keyword\":\"%s\"}}," +
                                                                 "{\"term\":{\"enabled\":true}}," +
-                                                                "{\"range\":{\"startDate\":{\"lte\":\"%s\"}}}," +
+                                                                "{\"range\":{\"startDate\":{\"lte\":\"%s\"}}},"
+                                                                +
                                                                 "{\"range\":{\"endDate\":{\"gte\":\"%s\"}}}" +
                                                                 "]}}}",
-                                                testProductId, formattedDate, formattedDate);
+                                                productId, formattedDate, formattedDate);
 
-                                logger.info("Test product query: {}", testQuery);
+                                logger.info("Product config query for {}: {}", productId, configQuery);
 
-                                SearchRequest testProductRequest = new SearchRequest.Builder()
+                                SearchRequest configRequest = new SearchRequest.Builder()
                                                 .index("product_configs")
-                                                .withJson(new StringReader(testQuery))
+                                                .withJson(new StringReader(configQuery))
                                                 .build();
 
-                                SearchResponse<ProductConfigES> testProductResponse = elasticsearchClient.search(
-                                                testProductRequest, ProductConfigES.class);
+                                SearchResponse<ProductConfigES> configResponse = elasticsearchClient.search(
+                                                configRequest, ProductConfigES.class);
 
-                                long testProductHits = testProductResponse.hits().total() != null
-                                                ? testProductResponse.hits().total().value()
+                                long configHits = configResponse.hits().total() != null
+                                                ? configResponse.hits().total().value()
                                                 : 0;
 
-                                logger.info("Test product {} has {} active configurations", testProductId,
-                                                testProductHits);
+                                logger.info("Product {} has {} active configurations", productId, configHits);
 
-                                if (testProductHits > 0) {
-                                        logger.info("Adding test product: {}", testProductId);
-                                        activeProducts.add(testProductId);
+                                if (configHits > 0) {
+                                        logger.info("Adding active product: {}", productId);
+                                        activeProducts.add(productId);
                                 }
+                        }
+
+                        // Explicitly check TEST-PROD-DIRECT
+                        String testProductId = "TEST-PROD-DIRECT";
+                        logger.info("Explicitly checking test product: {}", testProductId);
+
+                        String testQuery = String.format(
+                                        "{\"query\":{\"bool\":{\"must\":[" +
+                                                        "{\"term\":{\"productId.keyword\":\"%s\"}}," +
+                                                        "{\"term\":{\"enabled\":true}}," +
+                                                        "{\"range\":{\"startDate\":{\"lte\":\"%s\"}}}," +
+                                                        "{\"range\":{\"endDate\":{\"gte\":\"%s\"}}}" +
+                                                        "]}}}",
+                                        testProductId, formattedDate, formattedDate);
+
+                        logger.info("Test product query: {}", testQuery);
 
-                                // Update cache
-                                activeProductsCache = activeProducts;
-                                activeProductsCacheTimestamp = System.currentTimeMillis();
-
-                                // Log final result
-                                long totalTime = System.currentTimeMillis() - startTime;
-                                logger.info("FINAL RESULT: Found {} active products in {} ms",
-                                                activeProducts.size(), totalTime);
-                                logger.info("Active products: {}", activeProducts);
-
-                                return ResponseEntity.ok(activeProducts);
-                        } catch (Exception innerEx) {
-                                logger.error("Error in Elasticsearch query execution: {}", innerEx.getMessage(),
-                                                innerEx);
-                                throw innerEx; // Rethrow to be caught by the outer handler
+                        SearchRequest testProductRequest = new SearchRequest.Builder()
+                                        .index("product_configs")
+                                        .withJson(new StringReader(testQuery))
+                                        .build();
+
+                        SearchResponse<ProductConfigES> testProductResponse = elasticsearchClient.search(
+                                        testProductRequest, ProductConfigES.class);
+
+                        long testProductHits = testProductResponse.hits().total() != null
+                                        ? testProductResponse.hits().total().value()
+                                        : 0;
+
+                        logger.info("Test product {} has {} active configurations", testProductId,
+                                        testProductHits);
+
+                        if (testProductHits > 0) {
+                                logger.info("Adding test product: {}", testProductId);
+                                activeProducts.add(testProductId);
                         }
+
+                        // Log final result
+                        long totalTime = System.currentTimeMillis() - startTime;
+                        logger.info("FINAL RESULT: Found {} active products in {} ms",
+                                        activeProducts.size(), totalTime);
+                        logger.info("Active products: {}", activeProducts);
+
+                        return activeProducts;
                 } catch (Exception e) {
-                        logger.error("Error executing ultra-optimized Elasticsearch query: {}", e.getMessage(), e);
-                        // Return empty list but also include error information
-                        List<String> errorResult = new ArrayList<>();
-                        errorResult.add("ERROR: " + e.getClass().getSimpleName() + " - " + e.getMessage());
-                        return ResponseEntity.ok(errorResult);
+                        logger.error("Error in Elasticsearch query execution: {}", e.getMessage(), e);
+                        throw new IllegalStateException("Ultra-optimized active products query failed", e);
                 }
         }
 
@@ -1064,8 +1090,10 @@ public class ElasticsearchController {
                 return activeProductIds;
         }
 
-        // Cache variables for the ultra-optimized endpoint
-        private static final long CACHE_DURATION_MS = 60000; // 1 minute cache
-        private static List<String> activeProductsCache = null;
-        private static long activeProductsCacheTimestamp = 0;
-}
\ No newline at end of file
+        private static Query completedOrdersQuery() {
+                return Query.of(q -> q
+                                .term(t -> t
+                                                .field("status.keyword")
+                                                .value("COMPLETED")));
+        }
+}
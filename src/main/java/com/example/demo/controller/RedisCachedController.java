@@ -33,24 +33,15 @@ public class RedisCachedController {
         long startTime = System.currentTimeMillis();
         logger.info("Starting Redis-cached Elasticsearch active products query");
 
-        // Check Redis cache first
-        List<String> cachedResult = cacheService.getElasticsearchActiveProducts();
-        if (cachedResult != null) {
-            long duration = System.currentTimeMillis() - startTime;
-            logger.info("Redis cache hit! Returning {} products in {} ms", cachedResult.size(), duration);
-            return ResponseEntity.ok(cachedResult);
-        }
-
-        // Cache miss - query Elasticsearch
-        logger.info("Redis cache miss. Querying Elasticsearch directly...");
-        List<String> activeProducts = elasticsearchService.findDistinctActiveProductsOptimizedForCache();
-
-        // Cache the result
-        cacheService.cacheElasticsearchActiveProducts(activeProducts);
+        // Cache misses are coalesced so only one Elasticsearch query per key runs at a time
+        List<String> activeProducts = cacheService.getOrLoad(CacheService.ELASTICSEARCH_ACTIVE_PRODUCTS_KEY,
+                () -> {
+                    logger.info("Redis cache miss. Querying Elasticsearch directly...");
+                    return elasticsearchService.findDistinctActiveProductsOptimizedForCache();
+                });
 
         long duration = System.currentTimeMillis() - startTime;
-        logger.info("Redis cache populated with {} active products from Elasticsearch in {} ms",
-                activeProducts.size(), duration);
+        logger.info("Returning {} Elasticsearch active products in {} ms", activeProducts.size(), duration);
 
         return ResponseEntity.ok(activeProducts);
     }
@@ -60,24 +51,15 @@ public class RedisCachedController {
         long startTime = System.currentTimeMillis();
         logger.info("Starting Redis-cached MongoDB active products query");
 
-        // Check Redis cache first
-        List<String> cachedResult = cacheService.getMongoDbActiveProducts();
-        if (cachedResult != null) {
-            long duration = System.currentTimeMillis() - startTime;
-            logger.info("Redis cache hit! Returning {} products in {} ms", cachedResult.size(), duration);
-            return ResponseEntity.ok(cachedResult);
-        }
-
-        // Cache miss - query MongoDB
-        logger.info("Redis cache miss. Querying MongoDB directly...");
-        List<String> activeProducts = orderRepository.findDistinctActiveProductsWithMongoDistinct();
-
-        // Cache the result
-        cacheService.cacheMongoDbActiveProducts(activeProducts);
+        // Cache misses are coalesced so only one MongoDB query per key runs at a time
+        List<String> activeProducts = cacheService.getOrLoad(CacheService.MONGODB_ACTIVE_PRODUCTS_KEY,
+                () -> {
+                    logger.info("Redis cache miss. Querying MongoDB directly...");
+                    return orderRepository.findDistinctActiveProductsWithMongoDistinct();
+                });
 
         long duration = System.currentTimeMillis() - startTime;
-        logger.info("Redis cache populated with {} active products from MongoDB in {} ms",
-                activeProducts.size(), duration);
+        logger.info("Returning {} MongoDB active products in {} ms", activeProducts.size(), duration);
 
         return ResponseEntity.ok(activeProducts);
     }
@@ -100,7 +82,8 @@ public class RedisCachedController {
                 "elasticsearch_active_products_cached", elasticsearchProducts != null ? true : false,
                 "elasticsearch_active_products_count", elasticsearchProducts != null ? elasticsearchProducts.size() : 0,
                 "mongodb_active_products_cached", mongoProducts != null ? true : false,
-                "mongodb_active_products_count", mongoProducts != null ? mongoProducts.size() : 0);
+                "mongodb_active_products_count", mongoProducts != null ? mongoProducts.size() : 0,
+                "cache_stats", cacheService.getStats());
 
         return ResponseEntity.ok(info);
     }
@@ -0,0 +1,49 @@
+package com.example.demo.dto;
+
+/**
+ * Cached value together with the instant after which it is considered stale
+ * and should be refreshed in the background. Hard expiry is left to the
+ * cache store's own TTL.
+ */
+public class CacheEntry {
+    private Object value;
+    private long cachedAt;
+    private long refreshAfter;
+
+    public CacheEntry() {
+    }
+
+    public CacheEntry(Object value, long cachedAt, long refreshAfter) {
+        this.value = value;
+        this.cachedAt = cachedAt;
+        this.refreshAfter = refreshAfter;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public void setValue(Object value) {
+        this.value = value;
+    }
+
+    public long getCachedAt() {
+        return cachedAt;
+    }
+
+    public void setCachedAt(long cachedAt) {
+        this.cachedAt = cachedAt;
+    }
+
+    public long getRefreshAfter() {
+        return refreshAfter;
+    }
+
+    public void setRefreshAfter(long refreshAfter) {
+        this.refreshAfter = refreshAfter;
+    }
+
+    public boolean isStale(long now) {
+        return now >= refreshAfter;
+    }
+}
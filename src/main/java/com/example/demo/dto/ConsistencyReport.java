@@ -0,0 +1,85 @@
+package com.example.demo.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a MongoDB vs Redis product configuration consistency check.
+ */
+public class ConsistencyReport {
+    private boolean consistent;
+    private long mongoCount;
+    private long redisCount;
+    private int bucketCount;
+    private int divergentBuckets;
+    private List<String> missingInRedis = new ArrayList<>();
+    private List<String> missingInMongo = new ArrayList<>();
+    private List<String> mismatched = new ArrayList<>();
+
+    public ConsistencyReport() {
+    }
+
+    public boolean isConsistent() {
+        return consistent;
+    }
+
+    public void setConsistent(boolean consistent) {
+        this.consistent = consistent;
+    }
+
+    public long getMongoCount() {
+        return mongoCount;
+    }
+
+    public void setMongoCount(long mongoCount) {
+        this.mongoCount = mongoCount;
+    }
+
+    public long getRedisCount() {
+        return redisCount;
+    }
+
+    public void setRedisCount(long redisCount) {
+        this.redisCount = redisCount;
+    }
+
+    public int getBucketCount() {
+        return bucketCount;
+    }
+
+    public void setBucketCount(int bucketCount) {
+        this.bucketCount = bucketCount;
+    }
+
+    public int getDivergentBuckets() {
+        return divergentBuckets;
+    }
+
+    public void setDivergentBuckets(int divergentBuckets) {
+        this.divergentBuckets = divergentBuckets;
+    }
+
+    public List<String> getMissingInRedis() {
+        return missingInRedis;
+    }
+
+    public void setMissingInRedis(List<String> missingInRedis) {
+        this.missingInRedis = missingInRedis;
+    }
+
+    public List<String> getMissingInMongo() {
+        return missingInMongo;
+    }
+
+    public void setMissingInMongo(List<String> missingInMongo) {
+        this.missingInMongo = missingInMongo;
+    }
+
+    public List<String> getMismatched() {
+        return mismatched;
+    }
+
+    public void setMismatched(List<String> mismatched) {
+        this.mismatched = mismatched;
+    }
+}
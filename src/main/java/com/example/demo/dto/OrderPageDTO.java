@@ -0,0 +1,16 @@
+package com.example.demo.dto;
+
+import com.example.demo.model.Order;
+import lombok.Data;
+import java.util.List;
+
+/**
+ * One page of orders in (productId, _id) order. nextCursor is an opaque
+ * token for the following page and is null on the last page.
+ */
+@Data
+public class OrderPageDTO {
+    private List<Order> orders;
+    private int size;
+    private String nextCursor;
+}
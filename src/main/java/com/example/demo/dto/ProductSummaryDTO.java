@@ -1,9 +1,20 @@
 package com.example.demo.dto;
 
+/**
+ * Order statistics of one product, computed server-side. Percentiles of the
+ * order amount are null when the server cannot compute them ($percentile
+ * needs MongoDB 7.0).
+ */
 public class ProductSummaryDTO {
     private String productId;
     private long count;
     private double totalAmount;
+    private double averageAmount;
+    private double minAmount;
+    private double maxAmount;
+    private Double p50Amount;
+    private Double p95Amount;
+    private Double p99Amount;
 
     public ProductSummaryDTO() {
     }
@@ -31,4 +42,52 @@ public class ProductSummaryDTO {
     public void setTotalAmount(double totalAmount) {
         this.totalAmount = totalAmount;
     }
-}
\ No newline at end of file
+
+    public double getAverageAmount() {
+        return averageAmount;
+    }
+
+    public void setAverageAmount(double averageAmount) {
+        this.averageAmount = averageAmount;
+    }
+
+    public double getMinAmount() {
+        return minAmount;
+    }
+
+    public void setMinAmount(double minAmount) {
+        this.minAmount = minAmount;
+    }
+
+    public double getMaxAmount() {
+        return maxAmount;
+    }
+
+    public void setMaxAmount(double maxAmount) {
+        this.maxAmount = maxAmount;
+    }
+
+    public Double getP50Amount() {
+        return p50Amount;
+    }
+
+    public void setP50Amount(Double p50Amount) {
+        this.p50Amount = p50Amount;
+    }
+
+    public Double getP95Amount() {
+        return p95Amount;
+    }
+
+    public void setP95Amount(Double p95Amount) {
+        this.p95Amount = p95Amount;
+    }
+
+    public Double getP99Amount() {
+        return p99Amount;
+    }
+
+    public void setP99Amount(Double p99Amount) {
+        this.p99Amount = p99Amount;
+    }
+}
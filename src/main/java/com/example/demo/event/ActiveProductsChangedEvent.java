@@ -0,0 +1,23 @@
+package com.example.demo.event;
+
+import org.springframework.context.ApplicationEvent;
+
+import java.util.List;
+
+/**
+ * Published by the active product view whenever the set of distinct active
+ * product IDs changes.
+ */
+public class ActiveProductsChangedEvent extends ApplicationEvent {
+
+    private final List<String> productIds;
+
+    public ActiveProductsChangedEvent(Object source, List<String> productIds) {
+        super(source);
+        this.productIds = productIds;
+    }
+
+    public List<String> getProductIds() {
+        return productIds;
+    }
+}
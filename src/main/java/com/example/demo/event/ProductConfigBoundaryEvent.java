@@ -0,0 +1,41 @@
+package com.example.demo.event;
+
+import com.example.demo.model.ProductConfig;
+import org.springframework.context.ApplicationEvent;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published when a product configuration's activation window opens
+ * (startDate reached) or closes (endDate reached).
+ */
+public class ProductConfigBoundaryEvent extends ApplicationEvent {
+
+    public enum Type {
+        ACTIVATED,
+        DEACTIVATED
+    }
+
+    private final ProductConfig config;
+    private final Type type;
+    private final LocalDateTime boundary;
+
+    public ProductConfigBoundaryEvent(Object source, ProductConfig config, Type type, LocalDateTime boundary) {
+        super(source);
+        this.config = config;
+        this.type = type;
+        this.boundary = boundary;
+    }
+
+    public ProductConfig getConfig() {
+        return config;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public LocalDateTime getBoundary() {
+        return boundary;
+    }
+}
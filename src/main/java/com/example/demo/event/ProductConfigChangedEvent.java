@@ -0,0 +1,21 @@
+package com.example.demo.event;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published by the active product view when a configuration of a product is
+ * created, updated or deleted.
+ */
+public class ProductConfigChangedEvent extends ApplicationEvent {
+
+    private final String productId;
+
+    public ProductConfigChangedEvent(Object source, String productId) {
+        super(source);
+        this.productId = productId;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+}
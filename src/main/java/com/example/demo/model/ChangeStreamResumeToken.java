@@ -0,0 +1,21 @@
+package com.example.demo.model;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.Data;
+
+/**
+ * Last processed change-stream position of a replicated collection, keyed by
+ * collection name. The token is stored as extended JSON.
+ */
+@Data
+@Document(collection = "change_stream_resume_tokens")
+public class ChangeStreamResumeToken {
+    @Id
+    private String id;
+    private String token;
+    private LocalDateTime updatedAt;
+}
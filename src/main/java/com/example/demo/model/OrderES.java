@@ -49,6 +49,21 @@ public class OrderES {
     @JsonDeserialize(using = FlexibleLocalDateTimeDeserializer.class)
     private LocalDateTime updatedAt;
 
+    // Denormalized from the product's effective configuration, so activeness
+    // can be filtered on orders without joining product_configs
+    @Field(type = FieldType.Boolean)
+    private Boolean productEnabled;
+
+    @Field(type = FieldType.Date, format = DateFormat.date_hour_minute_second_millis)
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss[.SSS]")
+    @JsonDeserialize(using = FlexibleLocalDateTimeDeserializer.class)
+    private LocalDateTime productStartDate;
+
+    @Field(type = FieldType.Date, format = DateFormat.date_hour_minute_second_millis)
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss[.SSS]")
+    @JsonDeserialize(using = FlexibleLocalDateTimeDeserializer.class)
+    private LocalDateTime productEndDate;
+
     // Constructor to convert from MongoDB Order to Elasticsearch OrderES
     public static OrderES fromOrder(Order order) {
         OrderES orderES = new OrderES();
@@ -63,4 +78,15 @@ public class OrderES {
         orderES.setUpdatedAt(order.getUpdatedAt());
         return orderES;
     }
-}
\ No newline at end of file
+
+    // Converts an order and stamps it with its product's configuration (may be null)
+    public static OrderES fromOrder(Order order, ProductConfig productConfig) {
+        OrderES orderES = fromOrder(order);
+        if (productConfig != null) {
+            orderES.setProductEnabled(productConfig.isEnabled());
+            orderES.setProductStartDate(productConfig.getStartDate());
+            orderES.setProductEndDate(productConfig.getEndDate());
+        }
+        return orderES;
+    }
+}
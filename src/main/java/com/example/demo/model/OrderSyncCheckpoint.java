@@ -0,0 +1,34 @@
+package com.example.demo.model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.Data;
+
+/**
+ * Progress of one _id-range partition of the partitioned order export to
+ * Elasticsearch. Range bounds and lastId are ObjectId hex strings; a null
+ * bound is open. lastId only advances once every order up to it has been
+ * acknowledged by Elasticsearch, so a resumed export continues after it;
+ * failedIds lists the orders up to lastId that Elasticsearch rejected, which
+ * a resumed export retries first.
+ */
+@Data
+@Document(collection = "order_sync_checkpoints")
+public class OrderSyncCheckpoint {
+    @Id
+    private String id;
+    private int partition;
+    private String rangeStart;
+    private String rangeEnd;
+    private String lastId;
+    private long indexed;
+    private long failed;
+    private List<String> failedIds = new ArrayList<>();
+    private boolean completed;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,83 @@
+package com.example.demo.model;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.Data;
+
+/**
+ * Pending change to a {@link ProductConfig}, written together with the
+ * configuration itself (in one MongoDB transaction when transactions are
+ * enabled) and relayed to Redis and Elasticsearch by the outbox relay.
+ * Delivery is tracked per sink, so an outage of one sink never holds back
+ * the other; each sink receives events in _id order. The event is removed
+ * once both sinks have it.
+ */
+@Data
+@Document(collection = "product_config_outbox")
+@CompoundIndexes({
+        @CompoundIndex(name = "redis_status_id_idx", def = "{'redis.status': 1, '_id': 1}"),
+        @CompoundIndex(name = "elasticsearch_status_id_idx", def = "{'elasticsearch.status': 1, '_id': 1}")
+})
+public class ProductConfigOutboxEvent {
+
+    public enum Operation {
+        UPSERT, DELETE
+    }
+
+    public enum Status {
+        PENDING, DONE, FAILED
+    }
+
+    /**
+     * Delivery state of the event to one sink.
+     */
+    @Data
+    public static class Delivery {
+        private Status status;
+        private int attempts;
+        private String lastError;
+        private LocalDateTime nextAttemptAt;
+
+        static Delivery pending(LocalDateTime now) {
+            Delivery delivery = new Delivery();
+            delivery.setStatus(Status.PENDING);
+            delivery.setNextAttemptAt(now);
+            return delivery;
+        }
+    }
+
+    @Id
+    private String id;
+    private String configId;
+    private Operation operation;
+    // Full configuration state for UPSERT, so replays are idempotent
+    private ProductConfig payload;
+    private LocalDateTime createdAt;
+    private Delivery redis;
+    private Delivery elasticsearch;
+
+    public static ProductConfigOutboxEvent upsert(ProductConfig config) {
+        ProductConfigOutboxEvent event = pending(config.getId(), Operation.UPSERT);
+        event.setPayload(config);
+        return event;
+    }
+
+    public static ProductConfigOutboxEvent delete(String configId) {
+        return pending(configId, Operation.DELETE);
+    }
+
+    private static ProductConfigOutboxEvent pending(String configId, Operation operation) {
+        ProductConfigOutboxEvent event = new ProductConfigOutboxEvent();
+        event.setConfigId(configId);
+        event.setOperation(operation);
+        event.setCreatedAt(LocalDateTime.now());
+        event.setRedis(Delivery.pending(event.getCreatedAt()));
+        event.setElasticsearch(Delivery.pending(event.getCreatedAt()));
+        return event;
+    }
+}
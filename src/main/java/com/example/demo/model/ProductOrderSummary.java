@@ -0,0 +1,30 @@
+package com.example.demo.model;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.Data;
+
+/**
+ * Running order totals of one product, keyed by productId. Maintained with
+ * $inc/$min/$max as orders are created and rebuilt from the orders
+ * collection by {@code ProductOrderSummaryService.rebuild()}. Per-status
+ * counts and amounts are keyed by order status.
+ */
+@Data
+@Document(collection = "product_order_summaries")
+public class ProductOrderSummary {
+    @Id
+    private String productId;
+    private long orderCount;
+    private double totalAmount;
+    private Double minAmount;
+    private Double maxAmount;
+    private LocalDateTime lastOrderDate;
+    private Map<String, Long> countByStatus;
+    private Map<String, Double> amountByStatus;
+    private LocalDateTime updatedAt;
+}
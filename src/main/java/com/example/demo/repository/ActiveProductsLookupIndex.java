@@ -0,0 +1,60 @@
+package com.example.demo.repository;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single Elasticsearch document ({@code active_products/current}) holding
+ * the distinct active product IDs. Queries filter on it with a terms lookup,
+ * so ES resolves the active set itself and no application-side join or
+ * second round trip is needed.
+ */
+@Repository
+public class ActiveProductsLookupIndex {
+
+    static final String INDEX = "active_products";
+    static final String DOCUMENT_ID = "current";
+    static final String PATH = "productIds";
+
+    // Elasticsearch default of index.max_terms_count, the most IDs a terms lookup accepts
+    public static final int MAX_PRODUCT_IDS = 65536;
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    @Autowired
+    public ActiveProductsLookupIndex(ElasticsearchClient elasticsearchClient) {
+        this.elasticsearchClient = elasticsearchClient;
+    }
+
+    /**
+     * Replaces the lookup document with the given active product IDs.
+     */
+    public void write(List<String> productIds) throws IOException {
+        elasticsearchClient.index(i -> i
+                .index(INDEX)
+                .id(DOCUMENT_ID)
+                .document(Map.of(PATH, productIds, "updatedAt", LocalDateTime.now().toString())));
+    }
+
+    /**
+     * Filter matching documents whose {@code field} is one of the active
+     * product IDs in the lookup document.
+     */
+    public static Query activeProductFilter(String field) {
+        return Query.of(q -> q
+                .terms(t -> t
+                        .field(field)
+                        .terms(v -> v
+                                .lookup(l -> l
+                                        .index(INDEX)
+                                        .id(DOCUMENT_ID)
+                                        .path(PATH)))));
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.demo.repository;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeAggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeAggregationSource;
+import co.elastic.clients.elasticsearch._types.aggregations.CompositeBucket;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Pages through every distinct value of a keyword field with a composite
+ * aggregation, following {@code after_key} until the buckets run out.
+ * Unlike a {@code terms} aggregation this is exact at any cardinality, and
+ * each response carries at most {@code elasticsearch.composite.page-size}
+ * buckets, which are handed to the caller page by page.
+ */
+@Repository
+public class CompositeAggregationPager {
+
+    private static final String AGGREGATION_NAME = "values";
+    private static final String SOURCE_NAME = "value";
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchAsyncClient elasticsearchAsyncClient;
+
+    @Value("${elasticsearch.composite.page-size:1000}")
+    private int pageSize;
+
+    @Autowired
+    public CompositeAggregationPager(ElasticsearchClient elasticsearchClient,
+            ElasticsearchAsyncClient elasticsearchAsyncClient) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.elasticsearchAsyncClient = elasticsearchAsyncClient;
+    }
+
+    /**
+     * Hands the distinct values of {@code field} among documents matching
+     * {@code query} to the consumer one page at a time. Returns the number of
+     * values seen.
+     */
+    public long forEachValuePage(String index, Query query, String field, Consumer<List<String>> pageConsumer)
+            throws IOException {
+        return forEachBucketPage(index, query, field, Map.of(), buckets -> pageConsumer.accept(
+                buckets.stream().map(CompositeAggregationPager::keyOf).toList()));
+    }
+
+    /**
+     * Like {@link #forEachValuePage} but hands on raw buckets, with the given
+     * sub-aggregations computed per value.
+     */
+    public long forEachBucketPage(String index, Query query, String field, Map<String, Aggregation> subAggregations,
+            Consumer<List<CompositeBucket>> pageConsumer) throws IOException {
+        long count = 0;
+        Map<String, FieldValue> afterKey = null;
+        while (true) {
+            SearchResponse<Void> response = elasticsearchClient.search(
+                    pageRequest(index, query, field, subAggregations, afterKey), Void.class);
+            CompositeAggregate composite = response.aggregations().get(AGGREGATION_NAME).composite();
+            List<CompositeBucket> buckets = composite.buckets().array();
+            if (buckets.isEmpty()) {
+                return count;
+            }
+            pageConsumer.accept(buckets);
+            count += buckets.size();
+            afterKey = composite.afterKey();
+            if (afterKey == null || afterKey.isEmpty()) {
+                return count;
+            }
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #forEachValuePage}. The next page is only
+     * requested once the future returned by the handler for the current page
+     * completes; the result completes with the number of values seen.
+     */
+    public CompletableFuture<Long> forEachValuePageAsync(String index, Query query, String field,
+            Function<List<String>, CompletableFuture<?>> pageHandler) {
+        return nextValuePageAsync(index, query, field, null, 0, pageHandler);
+    }
+
+    private CompletableFuture<Long> nextValuePageAsync(String index, Query query, String field,
+            Map<String, FieldValue> afterKey, long count, Function<List<String>, CompletableFuture<?>> pageHandler) {
+        return elasticsearchAsyncClient.search(pageRequest(index, query, field, Map.of(), afterKey), Void.class)
+                .thenCompose(response -> {
+                    CompositeAggregate composite = response.aggregations().get(AGGREGATION_NAME).composite();
+                    List<CompositeBucket> buckets = composite.buckets().array();
+                    if (buckets.isEmpty()) {
+                        return CompletableFuture.completedFuture(count);
+                    }
+                    long seen = count + buckets.size();
+                    Map<String, FieldValue> nextAfterKey = composite.afterKey();
+                    return pageHandler.apply(buckets.stream().map(CompositeAggregationPager::keyOf).toList())
+                            .thenCompose(ignored -> nextAfterKey == null || nextAfterKey.isEmpty()
+                                    ? CompletableFuture.completedFuture(seen)
+                                    : nextValuePageAsync(index, query, field, nextAfterKey, seen, pageHandler));
+                });
+    }
+
+    /**
+     * The composite key of a bucket produced by this pager.
+     */
+    public static String keyOf(CompositeBucket bucket) {
+        return bucket.key().get(SOURCE_NAME).stringValue();
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    private SearchRequest pageRequest(String index, Query query, String field,
+            Map<String, Aggregation> subAggregations, Map<String, FieldValue> afterKey) {
+        return SearchRequest.of(s -> s
+                .index(index)
+                .size(0)
+                .query(query)
+                .aggregations(AGGREGATION_NAME, a -> {
+                    a.composite(c -> {
+                        c.size(pageSize)
+                                .sources(Map.of(SOURCE_NAME, CompositeAggregationSource.of(src -> src
+                                        .terms(t -> t.field(field)))));
+                        if (afterKey != null) {
+                            c.after(afterKey);
+                        }
+                        return c;
+                    });
+                    if (!subAggregations.isEmpty()) {
+                        a.aggregations(subAggregations);
+                    }
+                    return a;
+                }));
+    }
+}
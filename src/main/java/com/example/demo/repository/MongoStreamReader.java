@@ -0,0 +1,84 @@
+package com.example.demo.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Cursor-based reads for operations that touch a whole collection.
+ * Documents are fetched from the server in batches of
+ * {@code mongodb.stream.batch-size} and handed on one at a time or in
+ * lists of the same size, so peak heap follows the batch size rather than
+ * the collection size. Projections keep each document down to the fields
+ * the caller needs.
+ */
+@Repository
+public class MongoStreamReader {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${mongodb.stream.batch-size:1000}")
+    private int batchSize;
+
+    @Autowired
+    public MongoStreamReader(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Returns a query over the whole collection that only loads the given
+     * fields (plus _id); no fields means full documents.
+     */
+    public static Query projection(String... fields) {
+        Query query = new Query();
+        if (fields.length > 0) {
+            query.fields().include(fields);
+        }
+        return query;
+    }
+
+    /**
+     * Opens a cursor-backed stream for the query. The stream holds a server
+     * cursor and must be closed, typically with try-with-resources.
+     */
+    public <T> Stream<T> stream(Query query, Class<T> type) {
+        if (query.getMeta().getCursorBatchSize() == null) {
+            query.cursorBatchSize(batchSize);
+        }
+        return mongoTemplate.stream(query, type);
+    }
+
+    /**
+     * Streams the query result to the consumer in lists of at most the
+     * configured batch size. Returns the number of documents read.
+     */
+    public <T> long forEachBatch(Query query, Class<T> type, Consumer<List<T>> consumer) {
+        long count = 0;
+        List<T> batch = new ArrayList<>(batchSize);
+        try (Stream<T> documents = stream(query, type)) {
+            for (T document : (Iterable<T>) documents::iterator) {
+                batch.add(document);
+                count++;
+                if (batch.size() == batchSize) {
+                    consumer.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+        }
+        return count;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+}
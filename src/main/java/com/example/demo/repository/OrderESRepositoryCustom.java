@@ -1,6 +1,7 @@
 package com.example.demo.repository;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface OrderESRepositoryCustom {
     List<String> findDistinctActiveProductsES();
@@ -8,9 +9,30 @@ public interface OrderESRepositoryCustom {
     List<String> findDistinctActiveProductsESNative();
 
     /**
-     * High-performance implementation for finding active products
+     * High-performance implementation for finding active products: a single
+     * request filtering completed orders with a terms lookup against the
+     * active_products document
      * 
      * @return List of active product IDs
      */
     List<String> findDistinctActiveProductsOptimized();
-}
\ No newline at end of file
+
+    /**
+     * Single filtered terms aggregation over orders stamped with their
+     * product's configuration window; no join with product_configs
+     * 
+     * @return List of active product IDs
+     */
+    List<String> findDistinctActiveProductsDenormalized();
+
+    /**
+     * Non-blocking variants on the async client: the returned future
+     * completes on the client's I/O threads, and failures complete it with an
+     * empty list like their blocking counterparts
+     */
+    CompletableFuture<List<String>> findDistinctActiveProductsESNativeAsync();
+
+    CompletableFuture<List<String>> findDistinctActiveProductsOptimizedAsync();
+
+    CompletableFuture<List<String>> findDistinctActiveProductsDenormalizedAsync();
+}
@@ -1,11 +1,12 @@
 package com.example.demo.repository;
 
 import com.example.demo.model.OrderES;
-import com.example.demo.model.ProductConfigES;
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
-import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonData;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
@@ -16,8 +17,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.HashSet;
-import java.io.StringReader;
-import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,47 +27,37 @@ import org.slf4j.LoggerFactory;
 public class OrderESRepositoryImpl implements OrderESRepositoryCustom {
 
         private static final Logger logger = LoggerFactory.getLogger(OrderESRepositoryImpl.class);
+        private static final DateTimeFormatter ES_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
 
         @Autowired
         private ElasticsearchClient elasticsearchClient;
 
+        @Autowired
+        private ElasticsearchAsyncClient elasticsearchAsyncClient;
+
         @Autowired
         private ProductConfigESRepository productConfigESRepository;
 
+        @Autowired
+        private CompositeAggregationPager compositeAggregationPager;
+
+        @Autowired
+        private PointInTimeScroller pointInTimeScroller;
+
         @Override
         public List<String> findDistinctActiveProductsES() {
                 try {
                         long startTime = System.currentTimeMillis();
                         logger.info("Starting Elasticsearch two-step query for distinct active products");
 
-                        // Step 1: Get all completed orders
-                        SearchRequest searchRequest = new SearchRequest.Builder()
-                                        .index("orders")
-                                        .query(q -> q
-                                                        .term(t -> t
-                                                                        .field("status.keyword")
-                                                                        .value("COMPLETED")))
-                                        .size(10000)
-                                        .build();
-
-                        logger.debug("Search request: {}", searchRequest.toString());
-                        SearchResponse<OrderES> response = elasticsearchClient.search(searchRequest, OrderES.class);
-                        logger.debug("Search response: {}", response.toString());
-                        logger.info("Total hits: {}",
-                                        response.hits().total() != null ? response.hits().total().value() : 0);
-
-                        // Log a sample of the hits to verify document structure
-                        if (!response.hits().hits().isEmpty()) {
-                                Hit<OrderES> sampleHit = response.hits().hits().get(0);
-                                logger.info("Sample hit source: {}", sampleHit.source());
-                        }
-
-                        // Extract distinct product IDs
-                        Set<String> productIds = response.hits().hits().stream()
-                                        .map(Hit::source)
-                                        .filter(source -> source != null)
-                                        .map(OrderES::getProductId)
-                                        .collect(Collectors.toSet());
+                        // Step 1: Scan all completed orders with a point in time, fetching only productId
+                        Set<String> productIds = new HashSet<>();
+                        long completedOrders = pointInTimeScroller.forEachSourceBatch("orders", completedOrdersQuery(),
+                                        List.of("productId"), OrderES.class, orders -> orders.stream()
+                                                        .map(OrderES::getProductId)
+                                                        .filter(productId -> productId != null)
+                                                        .forEach(productIds::add));
+                        logger.info("Scanned {} completed orders", completedOrders);
 
                         long step1EndTime = System.currentTimeMillis();
                         logger.info("Step 1: Found {} distinct product IDs in {} ms",
@@ -78,25 +69,21 @@ public class OrderESRepositoryImpl implements OrderESRepositoryCustom {
                                 return Collections.emptyList();
                         }
 
-                        // Step 2: Get active product configurations for these IDs
+                        // Step 2: Keep the IDs that have an active product configuration
                         LocalDateTime now = LocalDateTime.now();
                         logger.debug("Querying active products with now = {}", now);
 
-                        // Use the custom method instead of Spring Data's method
-                        List<ProductConfigES> activeConfigs = ((ProductConfigESRepositoryCustom) productConfigESRepository)
-                                        .findActiveProductConfigsByProductIds(new ArrayList<>(productIds), now);
-
-                        logger.debug("Found {} active configurations", activeConfigs.size());
-                        for (ProductConfigES config : activeConfigs) {
-                                logger.debug("Active config: id={}, productId={}, enabled={}, startDate={}, endDate={}",
-                                                config.getId(), config.getProductId(), config.isEnabled(),
-                                                config.getStartDate(), config.getEndDate());
+                        // One composite-page-sized chunk of IDs at a time, each resolved by a terms
+                        // aggregation sized to the chunk so no active product is cut off
+                        List<String> distinctProductIds = new ArrayList<>(productIds);
+                        int chunkSize = compositeAggregationPager.getPageSize();
+                        Set<String> activeProductIds = new LinkedHashSet<>();
+                        for (int i = 0; i < distinctProductIds.size(); i += chunkSize) {
+                                activeProductIds.addAll(((ProductConfigESRepositoryCustom) productConfigESRepository)
+                                                .findActiveProductIdsAmong(distinctProductIds.subList(i,
+                                                                Math.min(i + chunkSize, distinctProductIds.size())), now));
                         }
-
-                        List<String> results = activeConfigs.stream()
-                                        .map(ProductConfigES::getProductId)
-                                        .distinct()
-                                        .collect(Collectors.toList());
+                        List<String> results = new ArrayList<>(activeProductIds);
 
                         long endTime = System.currentTimeMillis();
                         logger.info("Step 2: Filter for active configs completed in {} ms",
@@ -116,78 +103,27 @@ public class OrderESRepositoryImpl implements OrderESRepositoryCustom {
         public List<String> findDistinctActiveProductsESNative() {
                 try {
                         long startTime = System.currentTimeMillis();
-                        logger.info("Starting Elasticsearch native aggregation query for distinct active products");
-
-                        // Step 1: Use Elasticsearch aggregation to get distinct productIds from
-                        // completed orders
-                        SearchRequest searchRequest = new SearchRequest.Builder()
-                                        .index("orders")
-                                        .query(q -> q
-                                                        .term(t -> t
-                                                                        .field("status.keyword")
-                                                                        .value("COMPLETED")))
-                                        .aggregations("distinct_product_ids", a -> a
-                                                        .terms(t -> t
-                                                                        .field("productId.keyword")
-                                                                        .size(10000)))
-                                        .size(0) // We only need aggregations, not hits
-                                        .build();
-
-                        logger.debug("Native search request: {}", searchRequest.toString());
-                        SearchResponse<OrderES> response = elasticsearchClient.search(searchRequest, OrderES.class);
-                        logger.debug("Native search response aggregations: {}",
-                                        response.aggregations() != null ? "present" : "null");
-
-                        // Extract the distinct product IDs from the aggregation result
-                        List<String> distinctProductIds = Collections.emptyList();
-                        if (response.aggregations() != null
-                                        && response.aggregations().get("distinct_product_ids") != null) {
-                                distinctProductIds = response.aggregations()
-                                                .get("distinct_product_ids")
-                                                .sterms()
-                                                .buckets().array()
-                                                .stream()
-                                                .map(bucket -> bucket.key().stringValue())
-                                                .collect(Collectors.toList());
-                        }
-
-                        long step1EndTime = System.currentTimeMillis();
-                        logger.info("Step 1: Native ES aggregation completed in {} ms, found {} distinct products",
-                                        (step1EndTime - startTime), distinctProductIds.size());
-                        logger.debug("Distinct product IDs: {}", distinctProductIds);
-
-                        if (distinctProductIds.isEmpty()) {
-                                return Collections.emptyList();
-                        }
+                        logger.info("Starting Elasticsearch composite aggregation query for distinct active products");
 
-                        // Step 2: Get active product configurations for these IDs
                         LocalDateTime now = LocalDateTime.now();
-                        logger.debug("Querying active products with now = {}", now);
-
-                        // Use the custom method instead of Spring Data's method
-                        List<ProductConfigES> activeConfigs = ((ProductConfigESRepositoryCustom) productConfigESRepository)
-                                        .findActiveProductConfigsByProductIds(distinctProductIds, now);
-
-                        logger.debug("Found {} active configurations", activeConfigs.size());
-                        for (ProductConfigES config : activeConfigs) {
-                                logger.debug("Active config: id={}, productId={}, enabled={}, startDate={}, endDate={}",
-                                                config.getId(), config.getProductId(), config.isEnabled(),
-                                                config.getStartDate(), config.getEndDate());
-                        }
-
-                        List<String> results = activeConfigs.stream()
-                                        .map(ProductConfigES::getProductId)
-                                        .distinct()
-                                        .collect(Collectors.toList());
+                        Set<String> activeProductIds = new LinkedHashSet<>();
+
+                        // Page through the distinct product IDs of completed orders and resolve the
+                        // active configurations of each page before fetching the next one
+                        long distinctProducts = compositeAggregationPager.forEachValuePage("orders",
+                                        completedOrdersQuery(), "productId.keyword", productIds -> {
+                                                logger.debug("Resolving active product IDs for a page of {} product IDs",
+                                                                productIds.size());
+                                                activeProductIds.addAll(((ProductConfigESRepositoryCustom) productConfigESRepository)
+                                                                .findActiveProductIdsAmong(productIds, now));
+                                        });
 
                         long endTime = System.currentTimeMillis();
-                        logger.info("Step 2: Filter for active configs completed in {} ms",
-                                        (endTime - step1EndTime));
-                        logger.info("Total execution time: {} ms, found {} active products",
-                                        (endTime - startTime), results.size());
-                        logger.debug("Active product IDs: {}", results);
+                        logger.info("Total execution time: {} ms, found {} active products among {} distinct products",
+                                        (endTime - startTime), activeProductIds.size(), distinctProducts);
+                        logger.debug("Active product IDs: {}", activeProductIds);
 
-                        return results;
+                        return new ArrayList<>(activeProductIds);
                 } catch (Exception e) {
                         logger.error("Error executing findDistinctActiveProductsESNative", e);
                         return Collections.emptyList();
@@ -200,88 +136,152 @@ public class OrderESRepositoryImpl implements OrderESRepositoryCustom {
                         long startTime = System.currentTimeMillis();
                         logger.info("Starting optimized Elasticsearch query for active products");
 
-                        // Use current date for active product check
-                        LocalDateTime now = LocalDateTime.now();
-                        String formattedDate = now.format(DateTimeFormatter.ISO_DATE_TIME);
-
-                        // Single-query solution using aggregation and filter in one step
-                        String rawQuery = String.format(
-                                        "{" +
-                                                        "  \"size\": 0," +
-                                                        "  \"query\": {" +
-                                                        "    \"term\": {" +
-                                                        "      \"status.keyword\": \"COMPLETED\"" +
-                                                        "    }" +
-                                                        "  }," +
-                                                        "  \"aggs\": {" +
-                                                        "    \"distinct_products\": {" +
-                                                        "      \"terms\": {" +
-                                                        "        \"field\": \"productId.keyword\"," +
-                                                        "        \"size\": 10000" +
-                                                        "      }," +
-                                                        "      \"aggs\": {" +
-                                                        "        \"active_configs\": {" +
-                                                        "          \"filter\": {" +
-                                                        "            \"bool\": {" +
-                                                        "              \"must\": [" +
-                                                        "                { \"term\": { \"enabled\": true } }," +
-                                                        "                { \"range\": { \"startDate\": { \"lte\": \"%s\" } } },"
-                                                        +
-                                                        "                { \"range\": { \"endDate\": { \"gte\": \"%s\" } } }"
-                                                        +
-                                                        "              ]" +
-                                                        "            }" +
-                                                        "          }" +
-                                                        "        }" +
-                                                        "      }" +
-                                                        "    }" +
-                                                        "  }" +
-                                                        "}",
-                                        formattedDate, formattedDate);
-
-                        try {
-                                // Execute the query
-                                SearchRequest request = new SearchRequest.Builder()
-                                                .index("orders")
-                                                .withJson(new StringReader(rawQuery))
-                                                .build();
-
-                                SearchResponse<Void> response = elasticsearchClient.search(request, Void.class);
-
-                                // Process results - extract active product IDs
-                                List<String> activeProductIds = new ArrayList<>();
-
-                                if (response.aggregations() != null) {
-                                        var productBuckets = response.aggregations()
-                                                        .get("distinct_products")
-                                                        .sterms()
-                                                        .buckets().array();
-
-                                        for (var bucket : productBuckets) {
-                                                String productId = bucket.key().stringValue();
-                                                // Only include products that have active configurations
-                                                var activeConfigAgg = bucket.aggregations().get("active_configs");
-                                                if (activeConfigAgg != null
-                                                                && activeConfigAgg.filter().docCount() > 0) {
-                                                        activeProductIds.add(productId);
-                                                }
-                                        }
-                                }
-
-                                long duration = System.currentTimeMillis() - startTime;
-                                logger.info("Optimized query completed in {} ms, found {} active products",
-                                                duration, activeProductIds.size());
-
-                                return activeProductIds;
-
-                        } catch (IOException e) {
-                                logger.error("Error executing optimized Elasticsearch query", e);
-                                return Collections.emptyList();
-                        }
+                        // Single round trip: completed orders are filtered by a terms lookup against the
+                        // maintained active_products document and their product IDs aggregated
+                        SearchRequest request = lookupFilteredRequest();
+
+                        SearchResponse<Void> response = elasticsearchClient.search(request, Void.class);
+
+                        // Process results - extract active product IDs
+                        List<String> activeProductIds = aggregatedProductIds(response);
+
+                        long duration = System.currentTimeMillis() - startTime;
+                        logger.info("Optimized query completed in {} ms, found {} active products",
+                                        duration, activeProductIds.size());
+
+                        return activeProductIds;
 
                 } catch (Exception e) {
                         logger.error("Error in findDistinctActiveProductsOptimized", e);
                         return Collections.emptyList();
                 }
         }
-}
\ No newline at end of file
+
+        @Override
+        public List<String> findDistinctActiveProductsDenormalized() {
+                try {
+                        long startTime = System.currentTimeMillis();
+                        SearchRequest request = denormalizedRequest(LocalDateTime.now());
+
+                        SearchResponse<Void> response = elasticsearchClient.search(request, Void.class);
+
+                        List<String> activeProductIds = aggregatedProductIds(response);
+
+                        logger.info("Denormalized query completed in {} ms, found {} active products",
+                                        System.currentTimeMillis() - startTime, activeProductIds.size());
+                        return activeProductIds;
+                } catch (Exception e) {
+                        logger.error("Error in findDistinctActiveProductsDenormalized", e);
+                        return Collections.emptyList();
+                }
+        }
+
+        @Override
+        public CompletableFuture<List<String>> findDistinctActiveProductsESNativeAsync() {
+                long startTime = System.currentTimeMillis();
+                LocalDateTime now = LocalDateTime.now();
+                // Pages are resolved one after another, so the set is never written concurrently
+                Set<String> activeProductIds = new LinkedHashSet<>();
+
+                return compositeAggregationPager.forEachValuePageAsync("orders", completedOrdersQuery(),
+                                "productId.keyword", productIds -> ((ProductConfigESRepositoryCustom) productConfigESRepository)
+                                                .findActiveProductIdsAmongAsync(productIds, now)
+                                                .thenAccept(activeProductIds::addAll))
+                                .thenApply(distinctProducts -> {
+                                        List<String> results = new ArrayList<>(activeProductIds);
+                                        logger.info("Async native query completed in {} ms, found {} active products among {} distinct products",
+                                                        System.currentTimeMillis() - startTime, results.size(), distinctProducts);
+                                        return results;
+                                })
+                                .exceptionally(e -> {
+                                        logger.error("Error executing findDistinctActiveProductsESNativeAsync", e);
+                                        return Collections.emptyList();
+                                });
+        }
+
+        @Override
+        public CompletableFuture<List<String>> findDistinctActiveProductsOptimizedAsync() {
+                return aggregateAsync(lookupFilteredRequest(), "findDistinctActiveProductsOptimizedAsync");
+        }
+
+        @Override
+        public CompletableFuture<List<String>> findDistinctActiveProductsDenormalizedAsync() {
+                return aggregateAsync(denormalizedRequest(LocalDateTime.now()),
+                                "findDistinctActiveProductsDenormalizedAsync");
+        }
+
+        private CompletableFuture<List<String>> aggregateAsync(SearchRequest request, String operation) {
+                long startTime = System.currentTimeMillis();
+                return elasticsearchAsyncClient.search(request, Void.class)
+                                .thenApply(response -> {
+                                        List<String> activeProductIds = aggregatedProductIds(response);
+                                        logger.info("{} completed in {} ms, found {} active products", operation,
+                                                        System.currentTimeMillis() - startTime, activeProductIds.size());
+                                        return activeProductIds;
+                                })
+                                .exceptionally(e -> {
+                                        logger.error("Error in {}", operation, e);
+                                        return Collections.emptyList();
+                                });
+        }
+
+        private static SearchRequest lookupFilteredRequest() {
+                return new SearchRequest.Builder()
+                                .index("orders")
+                                .size(0)
+                                .query(q -> q
+                                                .bool(b -> b
+                                                                .filter(completedOrdersQuery())
+                                                                .filter(ActiveProductsLookupIndex
+                                                                                .activeProductFilter("productId.keyword"))))
+                                .aggregations("active_products", a -> a
+                                                .terms(t -> t
+                                                                .field("productId.keyword")
+                                                                .size(ActiveProductsLookupIndex.MAX_PRODUCT_IDS)))
+                                .build();
+        }
+
+        private static SearchRequest denormalizedRequest(LocalDateTime now) {
+                String formattedDate = now.format(ES_DATE_FORMAT);
+                return new SearchRequest.Builder()
+                                .index("orders")
+                                .size(0)
+                                .query(q -> q
+                                                .bool(b -> b
+                                                                .filter(completedOrdersQuery())
+                                                                .filter(f -> f
+                                                                                .term(t -> t
+                                                                                                .field("productEnabled")
+                                                                                                .value(true)))
+                                                                .filter(f -> f
+                                                                                .range(r -> r
+                                                                                                .field("productStartDate")
+                                                                                                .lte(JsonData.of(formattedDate))))
+                                                                .filter(f -> f
+                                                                                .range(r -> r
+                                                                                                .field("productEndDate")
+                                                                                                .gt(JsonData.of(formattedDate))))))
+                                .aggregations("active_products", a -> a
+                                                .terms(t -> t
+                                                                .field("productId.keyword")
+                                                                .size(ActiveProductsLookupIndex.MAX_PRODUCT_IDS)))
+                                .build();
+        }
+
+        private static List<String> aggregatedProductIds(SearchResponse<Void> response) {
+                return response.aggregations()
+                                .get("active_products")
+                                .sterms()
+                                .buckets().array()
+                                .stream()
+                                .map(bucket -> bucket.key().stringValue())
+                                .collect(Collectors.toList());
+        }
+
+        private static Query completedOrdersQuery() {
+                return Query.of(q -> q
+                                .term(t -> t
+                                                .field("status.keyword")
+                                                .value("COMPLETED")));
+        }
+}
@@ -1,11 +1,20 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.ProductSummaryDTO;
 import com.example.demo.model.Order;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderRepositoryCustom {
     List<Order> findOrdersByDateRange(LocalDateTime startDate, LocalDateTime endDate);
 
     List<String> findDistinctActiveProducts();
+
+    /**
+     * Order count, amount sum, average, min, max and percentiles per product,
+     * computed with a $match/$group pipeline; products without orders are
+     * left out.
+     */
+    List<ProductSummaryDTO> summarizeOrdersByProduct(Collection<String> productIds);
 }
\ No newline at end of file
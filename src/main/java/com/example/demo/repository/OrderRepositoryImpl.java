@@ -1,6 +1,8 @@
 package com.example.demo.repository;
 
+import com.example.demo.dto.ProductSummaryDTO;
 import com.example.demo.model.Order;
+import com.mongodb.MongoCommandException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.*;
@@ -8,6 +10,7 @@ import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -18,6 +21,10 @@ import org.bson.Document;
 @Repository
 public class OrderRepositoryImpl implements OrderRepositoryCustom {
         private static final Logger logger = LoggerFactory.getLogger(OrderRepositoryImpl.class);
+        private static final List<Double> AMOUNT_PERCENTILES = List.of(0.5, 0.95, 0.99);
+
+        // Cleared the first time the server rejects $percentile
+        private volatile boolean percentileSupported = true;
 
         @Autowired
         private MongoTemplate mongoTemplate;
@@ -244,4 +251,77 @@ public class OrderRepositoryImpl implements OrderRepositoryCustom {
 
                 return results;
         }
-}
\ No newline at end of file
+
+        @Override
+        public List<ProductSummaryDTO> summarizeOrdersByProduct(Collection<String> productIds) {
+                if (productIds.isEmpty()) {
+                        return List.of();
+                }
+                long startTime = System.currentTimeMillis();
+
+                List<Document> results;
+                if (percentileSupported) {
+                        try {
+                                results = aggregateProductSummaries(productIds, true);
+                        } catch (MongoCommandException e) {
+                                if (!e.getErrorMessage().contains("$percentile")) {
+                                        throw e;
+                                }
+                                // $percentile needs MongoDB 7.0 (and feature compatibility version 7.0)
+                                logger.warn("$percentile not available, summarizing orders without percentiles: {}",
+                                                e.getErrorMessage());
+                                percentileSupported = false;
+                                results = aggregateProductSummaries(productIds, false);
+                        }
+                } else {
+                        results = aggregateProductSummaries(productIds, false);
+                }
+
+                List<ProductSummaryDTO> summaries = results.stream()
+                                .map(OrderRepositoryImpl::toProductSummary)
+                                .collect(Collectors.toList());
+
+                logger.info("Summarized orders of {} products in {} ms", summaries.size(),
+                                System.currentTimeMillis() - startTime);
+                return summaries;
+        }
+
+        private List<Document> aggregateProductSummaries(Collection<String> productIds, boolean withPercentiles) {
+                Document match = productIds.size() == 1
+                                ? new Document("productId", productIds.iterator().next())
+                                : new Document("productId", new Document("$in", List.copyOf(productIds)));
+                Document group = new Document("_id", "$productId")
+                                .append("count", new Document("$sum", 1L))
+                                .append("totalAmount", new Document("$sum", "$amount"))
+                                .append("averageAmount", new Document("$avg", "$amount"))
+                                .append("minAmount", new Document("$min", "$amount"))
+                                .append("maxAmount", new Document("$max", "$amount"));
+                if (withPercentiles) {
+                        group.append("percentiles", new Document("$percentile", new Document("input", "$amount")
+                                        .append("p", AMOUNT_PERCENTILES)
+                                        .append("method", "approximate")));
+                }
+
+                return mongoTemplate.getCollection("orders")
+                                .aggregate(List.of(new Document("$match", match), new Document("$group", group)))
+                                .into(new java.util.ArrayList<>());
+        }
+
+        private static ProductSummaryDTO toProductSummary(Document result) {
+                ProductSummaryDTO summary = new ProductSummaryDTO();
+                summary.setProductId(result.getString("_id"));
+                summary.setCount(((Number) result.get("count")).longValue());
+                summary.setTotalAmount(((Number) result.get("totalAmount")).doubleValue());
+                summary.setAverageAmount(((Number) result.get("averageAmount")).doubleValue());
+                summary.setMinAmount(((Number) result.get("minAmount")).doubleValue());
+                summary.setMaxAmount(((Number) result.get("maxAmount")).doubleValue());
+
+                List<Number> percentiles = result.getList("percentiles", Number.class);
+                if (percentiles != null && percentiles.size() == AMOUNT_PERCENTILES.size()) {
+                        summary.setP50Amount(percentiles.get(0).doubleValue());
+                        summary.setP95Amount(percentiles.get(1).doubleValue());
+                        summary.setP99Amount(percentiles.get(2).doubleValue());
+                }
+                return summary;
+        }
+}
@@ -0,0 +1,13 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.OrderSyncCheckpoint;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OrderSyncCheckpointRepository extends MongoRepository<OrderSyncCheckpoint, String> {
+
+    List<OrderSyncCheckpoint> findAllByOrderByPartitionAsc();
+}
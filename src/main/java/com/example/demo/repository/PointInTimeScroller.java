@@ -0,0 +1,118 @@
+package com.example.demo.repository;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Scans every hit of a query with a point in time and {@code search_after},
+ * sorted by {@code _shard_doc}. Hits are handed to the caller one batch at a
+ * time with {@code _source} filtered down to the requested fields, so scans
+ * are complete, bounded in memory and not limited by
+ * {@code index.max_result_window}.
+ */
+@Repository
+public class PointInTimeScroller {
+    private static final Logger logger = LoggerFactory.getLogger(PointInTimeScroller.class);
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    @Value("${elasticsearch.scroll.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${elasticsearch.scroll.keep-alive:1m}")
+    private String keepAlive;
+
+    @Autowired
+    public PointInTimeScroller(ElasticsearchClient elasticsearchClient) {
+        this.elasticsearchClient = elasticsearchClient;
+    }
+
+    /**
+     * Hands the sources of all hits to the consumer batch by batch and returns
+     * the number of hits scanned.
+     */
+    public <T> long forEachSourceBatch(String index, Query query, List<String> sourceIncludes, Class<T> type,
+            Consumer<List<T>> batchConsumer) throws IOException {
+        return forEachHitBatch(index, query, sourceIncludes, type, hits -> batchConsumer.accept(hits.stream()
+                .map(Hit::source)
+                .filter(Objects::nonNull)
+                .toList()));
+    }
+
+    /**
+     * Hands all hits to the consumer batch by batch and returns the number of
+     * hits scanned. An empty {@code sourceIncludes} fetches whole documents.
+     */
+    public <T> long forEachHitBatch(String index, Query query, List<String> sourceIncludes, Class<T> type,
+            Consumer<List<Hit<T>>> batchConsumer) throws IOException {
+        String pitId = elasticsearchClient.openPointInTime(p -> p
+                .index(index)
+                .keepAlive(k -> k.time(keepAlive))).id();
+        long count = 0;
+        try {
+            List<FieldValue> searchAfter = null;
+            while (true) {
+                SearchResponse<T> response = elasticsearchClient.search(
+                        pageRequest(pitId, query, sourceIncludes, searchAfter), type);
+                // The point in time id may change between requests
+                if (response.pitId() != null) {
+                    pitId = response.pitId();
+                }
+                List<Hit<T>> hits = response.hits().hits();
+                if (hits.isEmpty()) {
+                    return count;
+                }
+                batchConsumer.accept(hits);
+                count += hits.size();
+                if (hits.size() < batchSize) {
+                    return count;
+                }
+                searchAfter = hits.get(hits.size() - 1).sort();
+            }
+        } finally {
+            closePointInTime(pitId);
+        }
+    }
+
+    private SearchRequest pageRequest(String pitId, Query query, List<String> sourceIncludes,
+            List<FieldValue> searchAfter) {
+        return SearchRequest.of(s -> {
+            s.pit(p -> p.id(pitId).keepAlive(k -> k.time(keepAlive)))
+                    .query(query)
+                    .size(batchSize)
+                    .trackTotalHits(t -> t.enabled(false))
+                    .sort(so -> so.field(f -> f.field("_shard_doc").order(SortOrder.Asc)));
+            if (!sourceIncludes.isEmpty()) {
+                s.source(src -> src.filter(f -> f.includes(sourceIncludes)));
+            }
+            if (searchAfter != null) {
+                s.searchAfter(searchAfter);
+            }
+            return s;
+        });
+    }
+
+    private void closePointInTime(String pitId) {
+        try {
+            elasticsearchClient.closePointInTime(c -> c.id(pitId));
+        } catch (Exception e) {
+            // An unclosed point in time expires after the keep-alive anyway
+            logger.warn("Could not close point in time: {}", e.getMessage());
+        }
+    }
+}
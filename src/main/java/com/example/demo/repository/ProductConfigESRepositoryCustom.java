@@ -3,7 +3,16 @@ package com.example.demo.repository;
 import com.example.demo.model.ProductConfigES;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface ProductConfigESRepositoryCustom {
     List<ProductConfigES> findActiveProductConfigsByProductIds(List<String> productIds, LocalDateTime now);
+
+    /**
+     * Returns those of the given product IDs that have an active
+     * configuration at {@code now}, without fetching configuration documents.
+     */
+    List<String> findActiveProductIdsAmong(List<String> productIds, LocalDateTime now);
+
+    CompletableFuture<List<String>> findActiveProductIdsAmongAsync(List<String> productIds, LocalDateTime now);
 }
\ No newline at end of file
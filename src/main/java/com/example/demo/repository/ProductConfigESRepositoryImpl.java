@@ -1,7 +1,10 @@
 package com.example.demo.repository;
 
 import com.example.demo.model.ProductConfigES;
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
@@ -16,16 +19,22 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 @Repository
 public class ProductConfigESRepositoryImpl implements ProductConfigESRepositoryCustom {
 
     private static final Logger logger = LoggerFactory.getLogger(ProductConfigESRepositoryImpl.class);
-    private static final DateTimeFormatter ES_DATE_FORMATTER = DateTimeFormatter.ISO_DATE;
+    // Matches the date_hour_minute_second_millis mapping of startDate and endDate
+    private static final DateTimeFormatter ES_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
 
     @Autowired
     private ElasticsearchClient elasticsearchClient;
 
+    @Autowired
+    private ElasticsearchAsyncClient elasticsearchAsyncClient;
+
     @Override
     public List<ProductConfigES> findActiveProductConfigsByProductIds(List<String> productIds, LocalDateTime now) {
         try {
@@ -34,81 +43,12 @@ public class ProductConfigESRepositoryImpl implements ProductConfigESRepositoryC
                 return Collections.emptyList();
             }
 
-            // For testing purposes, use a hardcoded date that matches our test data range
-            // TODO: Remove this hardcoded date in production
-            String formattedDate = "2025-04-01"; // Use a date that falls within the test data range
+            String formattedDate = now.format(ES_DATE_FORMATTER);
             logger.info("Finding active product configs for {} product IDs at date: {}",
                     productIds.size(), formattedDate);
             logger.debug("Product IDs: {}", productIds);
 
-            // First, let's check if there are any product configurations at all
-            try {
-                SearchRequest countRequest = new SearchRequest.Builder()
-                        .index("product_configs")
-                        .size(0)
-                        .build();
-
-                SearchResponse<ProductConfigES> countResponse = elasticsearchClient.search(
-                        countRequest, ProductConfigES.class);
-
-                long totalConfigs = countResponse.hits().total() != null ? countResponse.hits().total().value() : 0;
-                logger.info("Total product configs in index: {}", totalConfigs);
-            } catch (Exception e) {
-                logger.error("Error counting product configs", e);
-            }
-
-            // Let's check how many enabled configs exist
-            try {
-                SearchRequest enabledRequest = new SearchRequest.Builder()
-                        .index("product_configs")
-                        .query(q -> q
-                                .term(t -> t
-                                        .field("enabled")
-                                        .value(true)))
-                        .size(0)
-                        .build();
-
-                SearchResponse<ProductConfigES> enabledResponse = elasticsearchClient.search(
-                        enabledRequest, ProductConfigES.class);
-
-                long enabledConfigs = enabledResponse.hits().total() != null ? enabledResponse.hits().total().value()
-                        : 0;
-                logger.info("Total enabled product configs: {}", enabledConfigs);
-            } catch (Exception e) {
-                logger.error("Error counting enabled product configs", e);
-            }
-
-            SearchRequest searchRequest = new SearchRequest.Builder()
-                    .index("product_configs")
-                    .query(q -> q
-                            .bool(b -> {
-                                b.must(m -> m
-                                        .term(t -> t
-                                                .field("enabled")
-                                                .value(true)))
-                                        .must(m -> m
-                                                .range(r -> r
-                                                        .field("startDate")
-                                                        .lte(JsonData.of(formattedDate))))
-                                        .must(m -> m
-                                                .range(r -> r
-                                                        .field("endDate")
-                                                        .gte(JsonData.of(formattedDate))));
-
-                                if (productIds != null && !productIds.isEmpty()) {
-                                    for (String productId : productIds) {
-                                        b.should(s -> s
-                                                .term(t -> t
-                                                        .field("productId.keyword")
-                                                        .value(productId)));
-                                    }
-                                    b.minimumShouldMatch("1");
-                                }
-
-                                return b;
-                            }))
-                    .size(1000)
-                    .build();
+            SearchRequest searchRequest = activeConfigsRequest(productIds, formattedDate);
 
             logger.debug("Executing search request: {}", searchRequest.toString());
             SearchResponse<ProductConfigES> response = elasticsearchClient.search(
@@ -116,13 +56,7 @@ public class ProductConfigESRepositoryImpl implements ProductConfigESRepositoryC
             logger.debug("Search response hits: {}",
                     response.hits().total() != null ? response.hits().total().value() : 0);
 
-            List<ProductConfigES> result = new ArrayList<>();
-            for (Hit<ProductConfigES> hit : response.hits().hits()) {
-                if (hit.source() != null) {
-                    result.add(hit.source());
-                    logger.debug("Found active config: {}", hit.source());
-                }
-            }
+            List<ProductConfigES> result = sourcesOf(response);
 
             logger.info("Found {} active product configurations", result.size());
             return result;
@@ -131,4 +65,131 @@ public class ProductConfigESRepositoryImpl implements ProductConfigESRepositoryC
             return Collections.emptyList();
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<String> findActiveProductIdsAmong(List<String> productIds, LocalDateTime now) {
+        if (productIds == null || productIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try {
+            SearchResponse<Void> response = elasticsearchClient.search(activeProductIdsRequest(productIds, now),
+                    Void.class);
+            List<String> activeProductIds = aggregatedProductIds(response);
+            logger.debug("{} of {} product IDs have an active configuration", activeProductIds.size(),
+                    productIds.size());
+            return activeProductIds;
+        } catch (Exception e) {
+            logger.error("Error finding active product IDs among {} product IDs", productIds.size(), e);
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<String>> findActiveProductIdsAmongAsync(List<String> productIds,
+            LocalDateTime now) {
+        if (productIds == null || productIds.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+        return elasticsearchAsyncClient.search(activeProductIdsRequest(productIds, now), Void.class)
+                .thenApply(ProductConfigESRepositoryImpl::aggregatedProductIds)
+                .exceptionally(e -> {
+                    logger.error("Error finding active product IDs among {} product IDs", productIds.size(), e);
+                    return Collections.emptyList();
+                });
+    }
+
+    /**
+     * Searches the configurations of the given product IDs that are active
+     * at the formatted instant (startDate inclusive, endDate exclusive).
+     */
+    private static SearchRequest activeConfigsRequest(List<String> productIds, String formattedDate) {
+        return new SearchRequest.Builder()
+                .index("product_configs")
+                .query(q -> q
+                        .bool(b -> {
+                            b.must(m -> m
+                                    .term(t -> t
+                                            .field("enabled")
+                                            .value(true)))
+                                    .must(m -> m
+                                            .range(r -> r
+                                                    .field("startDate")
+                                                    .lte(JsonData.of(formattedDate))))
+                                    .must(m -> m
+                                            .range(r -> r
+                                                    .field("endDate")
+                                                    .gt(JsonData.of(formattedDate))));
+
+                            for (String productId : productIds) {
+                                b.should(s -> s
+                                        .term(t -> t
+                                                .field("productId.keyword")
+                                                .value(productId)));
+                            }
+                            b.minimumShouldMatch("1");
+
+                            return b;
+                        }))
+                .size(1000)
+                .build();
+    }
+
+    /**
+     * Aggregates the given product IDs that have a configuration active at
+     * {@code now} (startDate inclusive, endDate exclusive). The terms
+     * aggregation is sized to the number of IDs asked for, so the result is
+     * exact and no configuration documents are fetched.
+     */
+    private static SearchRequest activeProductIdsRequest(List<String> productIds, LocalDateTime now) {
+        String formattedDate = now.format(ES_DATE_FORMATTER);
+        List<FieldValue> fieldValues = productIds.stream()
+                .map(FieldValue::of)
+                .collect(Collectors.toList());
+        return new SearchRequest.Builder()
+                .index("product_configs")
+                .size(0)
+                .query(q -> q
+                        .bool(b -> b
+                                .filter(f -> f
+                                        .terms(t -> t
+                                                .field("productId.keyword")
+                                                .terms(ft -> ft.value(fieldValues))))
+                                .filter(f -> f
+                                        .term(t -> t
+                                                .field("enabled")
+                                                .value(true)))
+                                .filter(f -> f
+                                        .range(r -> r
+                                                .field("startDate")
+                                                .lte(JsonData.of(formattedDate))))
+                                .filter(f -> f
+                                        .range(r -> r
+                                                .field("endDate")
+                                                .gt(JsonData.of(formattedDate))))))
+                .aggregations("active_products", a -> a
+                        .terms(t -> t
+                                .field("productId.keyword")
+                                .size(productIds.size())))
+                .build();
+    }
+
+    private static List<String> aggregatedProductIds(SearchResponse<Void> response) {
+        List<String> productIds = new ArrayList<>();
+        for (StringTermsBucket bucket : response.aggregations().get("active_products").sterms()
+                .buckets().array()) {
+            productIds.add(bucket.key().stringValue());
+        }
+        return productIds;
+    }
+
+    private static List<ProductConfigES> sourcesOf(SearchResponse<ProductConfigES> response) {
+        List<ProductConfigES> result = new ArrayList<>();
+        for (Hit<ProductConfigES> hit : response.hits().hits()) {
+            if (hit.source() != null) {
+                result.add(hit.source());
+                logger.debug("Found active config: {}", hit.source());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.demo.repository;
+
+import com.example.demo.util.ProductConfigFingerprint;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fingerprints of the product configurations currently held in Redis, kept
+ * in one hash per bucket ({@code product_config:fp:<bucket>}, field = config
+ * ID). They record which MongoDB state each Redis entry was written from, so
+ * syncs only touch entries whose fingerprint changed.
+ */
+@Repository
+public class ProductConfigFingerprintStore {
+
+    static final String KEY_PREFIX = "product_config:fp:";
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Autowired
+    public ProductConfigFingerprintStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    public static String bucketKey(int bucket) {
+        return KEY_PREFIX + bucket;
+    }
+
+    /**
+     * Loads the fingerprints of the given configuration IDs in a single
+     * pipelined round trip; IDs without a fingerprint are left out.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, String> findAll(Collection<String> ids) {
+        Map<Integer, List<Object>> byBucket = groupByBucket(ids);
+        List<Integer> buckets = new ArrayList<>(byBucket.keySet());
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (Integer bucket : buckets) {
+                    ops.opsForHash().multiGet(bucketKey(bucket), byBucket.get(bucket));
+                }
+                return null;
+            }
+        });
+
+        Map<String, String> fingerprints = new HashMap<>();
+        for (int i = 0; i < buckets.size(); i++) {
+            List<Object> bucketIds = byBucket.get(buckets.get(i));
+            List<Object> values = (List<Object>) results.get(i);
+            for (int j = 0; j < bucketIds.size(); j++) {
+                if (values.get(j) != null) {
+                    fingerprints.put((String) bucketIds.get(j), (String) values.get(j));
+                }
+            }
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Returns the configuration IDs that have a fingerprint in one bucket.
+     */
+    public Set<String> findIdsInBucket(int bucket) {
+        Set<Object> ids = redisTemplate.opsForHash().keys(bucketKey(bucket));
+        Set<String> result = new HashSet<>(ids.size());
+        ids.forEach(id -> result.add((String) id));
+        return result;
+    }
+
+    /**
+     * Stores the given fingerprints (config ID to fingerprint) with pipelined writes.
+     */
+    public void putAll(Map<String, String> fingerprints) {
+        if (fingerprints.isEmpty()) {
+            return;
+        }
+        Map<Integer, Map<String, String>> byBucket = new HashMap<>();
+        fingerprints.forEach((id, fingerprint) -> byBucket
+                .computeIfAbsent(ProductConfigFingerprint.bucketOf(id), bucket -> new HashMap<>())
+                .put(id, fingerprint));
+
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                byBucket.forEach((bucket, entries) -> ops.opsForHash().putAll(bucketKey(bucket), entries));
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Removes the fingerprints of the given configuration IDs.
+     */
+    public void removeAll(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<Object>> byBucket = groupByBucket(ids);
+
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                byBucket.forEach((bucket, bucketIds) ->
+                        ops.opsForHash().delete(bucketKey(bucket), bucketIds.toArray()));
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Drops all fingerprints, forcing the next sync to rewrite every entry.
+     */
+    public void clear() {
+        List<String> keys = new ArrayList<>(ProductConfigFingerprint.BUCKET_COUNT);
+        for (int bucket = 0; bucket < ProductConfigFingerprint.BUCKET_COUNT; bucket++) {
+            keys.add(bucketKey(bucket));
+        }
+        redisTemplate.delete(keys);
+    }
+
+    private static Map<Integer, List<Object>> groupByBucket(Collection<String> ids) {
+        Map<Integer, List<Object>> byBucket = new HashMap<>();
+        for (String id : ids) {
+            byBucket.computeIfAbsent(ProductConfigFingerprint.bucketOf(id), bucket -> new ArrayList<>()).add(id);
+        }
+        return byBucket;
+    }
+}
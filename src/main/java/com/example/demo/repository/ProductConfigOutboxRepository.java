@@ -0,0 +1,21 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.ProductConfigOutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ProductConfigOutboxRepository extends MongoRepository<ProductConfigOutboxEvent, String> {
+    List<ProductConfigOutboxEvent> findByRedisStatusOrderByIdAsc(ProductConfigOutboxEvent.Status status,
+            Pageable pageable);
+
+    List<ProductConfigOutboxEvent> findByElasticsearchStatusOrderByIdAsc(ProductConfigOutboxEvent.Status status,
+            Pageable pageable);
+
+    long countByRedisStatus(ProductConfigOutboxEvent.Status status);
+
+    long countByElasticsearchStatus(ProductConfigOutboxEvent.Status status);
+}
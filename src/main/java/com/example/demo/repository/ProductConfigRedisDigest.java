@@ -0,0 +1,113 @@
+package com.example.demo.repository;
+
+import com.example.demo.util.ProductConfigFingerprint;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Computes fingerprints of the product configuration hashes actually stored
+ * in Redis. IDs are read with SSCAN and their hashes with one pipelined HMGET
+ * per SSCAN-sized chunk, so large keyspaces never block Redis, never travel
+ * over the wire in full, and every key is addressed explicitly (safe on
+ * Redis Cluster).
+ */
+@Repository
+public class ProductConfigRedisDigest {
+
+    private static final String KEYSPACE_KEY = "product_config";
+    private static final String HASH_KEY_PREFIX = "product_config:";
+    private static final List<Object> FINGERPRINT_FIELDS = List.of("productId", "enabled", "startDate", "endDate");
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Autowired
+    public ProductConfigRedisDigest(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * Returns the digest of every non-empty bucket.
+     */
+    public Map<Integer, ProductConfigFingerprint.BucketDigest> digestBuckets(int bucketCount, int scanCount) {
+        Map<Integer, ProductConfigFingerprint.BucketDigest> digests = new HashMap<>();
+        scanFingerprints(scanCount, id -> true, (id, fingerprint) -> digests
+                .computeIfAbsent(ProductConfigFingerprint.bucketOf(id, bucketCount),
+                        bucket -> new ProductConfigFingerprint.BucketDigest())
+                .add(id, fingerprint));
+        return digests;
+    }
+
+    /**
+     * Returns the fingerprint of every stored configuration whose ID falls
+     * into one of the given buckets.
+     */
+    public Map<String, String> fingerprintsInBuckets(Set<Integer> buckets, int bucketCount, int scanCount) {
+        Map<String, String> fingerprints = new HashMap<>();
+        if (buckets.isEmpty()) {
+            return fingerprints;
+        }
+        scanFingerprints(scanCount, id -> buckets.contains(ProductConfigFingerprint.bucketOf(id, bucketCount)),
+                fingerprints::put);
+        return fingerprints;
+    }
+
+    /**
+     * Walks the ID set with SSCAN and hands the fingerprint of every accepted
+     * ID to the consumer, reading the hashes one chunk at a time.
+     */
+    private void scanFingerprints(int scanCount, Predicate<String> accept,
+            BiConsumer<String, String> consumer) {
+        ScanOptions options = ScanOptions.scanOptions().count(scanCount).build();
+        List<String> chunk = new ArrayList<>(scanCount);
+        try (Cursor<String> cursor = redisTemplate.opsForSet().scan(KEYSPACE_KEY, options)) {
+            while (cursor.hasNext()) {
+                String id = cursor.next();
+                if (!accept.test(id)) {
+                    continue;
+                }
+                chunk.add(id);
+                if (chunk.size() >= scanCount) {
+                    fingerprintChunk(chunk, consumer);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            fingerprintChunk(chunk, consumer);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void fingerprintChunk(List<String> ids, BiConsumer<String, String> consumer) {
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (String id : ids) {
+                    ops.opsForHash().multiGet(HASH_KEY_PREFIX + id, FINGERPRINT_FIELDS);
+                }
+                return null;
+            }
+        });
+        for (int i = 0; i < ids.size(); i++) {
+            List<Object> fields = (List<Object>) results.get(i);
+            consumer.accept(ids.get(i), ProductConfigFingerprint.ofStoredFields(
+                    (String) fields.get(0), (String) fields.get(1), (String) fields.get(2), (String) fields.get(3)));
+        }
+    }
+}
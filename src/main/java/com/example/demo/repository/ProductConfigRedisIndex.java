@@ -0,0 +1,415 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.ProductConfigRedis;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Redis-side time index for {@link ProductConfigRedis} hashes.
+ * Config IDs are kept in two sorted sets scored by startDate and endDate
+ * epoch millis plus a set of enabled IDs, so active configurations are
+ * resolved by a range intersection on the server instead of loading every
+ * hash with findAll(). A hash from config ID to productId lets scripts
+ * resolve productIds without touching the config hashes. All index keys
+ * share the {product_config} hash tag, so scripts, intersections and the
+ * staging swap stay within one cluster slot. Configurations whose window
+ * has ended are pruned periodically. Requires Redis 6.2+ for ZRANGESTORE.
+ */
+@Repository
+public class ProductConfigRedisIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ProductConfigRedisIndex.class);
+
+    static final String START_KEY = "{product_config}:idx:start";
+    static final String END_KEY = "{product_config}:idx:end";
+    static final String ENABLED_KEY = "{product_config}:idx:enabled";
+    static final String PRODUCT_KEY = "{product_config}:idx:product";
+    private static final String TEMP_KEY_PREFIX = "{product_config}:idx:tmp:";
+    // Index keys used before the hash tag was introduced, dropped on backfill
+    private static final List<String> LEGACY_KEYS = List.of(
+            "product_config:idx:start", "product_config:idx:end", "product_config:idx:enabled");
+    // Set of all hash IDs maintained by Spring Data Redis for the keyspace
+    private static final String KEYSPACE_KEY = "product_config";
+    private static final int PIPELINE_BATCH_SIZE = 500;
+    private static final int PRUNE_BATCH_SIZE = 1000;
+
+    // EVALSHA is tried first with the locally computed SHA1, falling back to EVAL on NOSCRIPT
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> ACTIVE_PRODUCT_IDS_SCRIPT =
+            new DefaultRedisScript<>(new ClassPathResource("scripts/active_product_ids.lua"), List.class);
+    private static final RedisScript<Long> PRUNE_ENDED_SCRIPT =
+            new DefaultRedisScript<>(new ClassPathResource("scripts/prune_ended_product_configs.lua"), Long.class);
+    private static final List<String> INDEX_KEYS = List.of(START_KEY, END_KEY, ENABLED_KEY, PRODUCT_KEY);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ProductConfigRedisRepository redisRepository;
+    private final boolean pruneEnabled;
+
+    @Autowired
+    public ProductConfigRedisIndex(StringRedisTemplate redisTemplate, ProductConfigRedisRepository redisRepository,
+            @Value("${redis.index.prune.enabled:true}") boolean pruneEnabled) {
+        this.redisTemplate = redisTemplate;
+        this.redisRepository = redisRepository;
+        this.pruneEnabled = pruneEnabled;
+    }
+
+    /**
+     * Adds or refreshes the index entries of a single configuration.
+     */
+    public void index(ProductConfigRedis config) {
+        indexAll(List.of(config));
+    }
+
+    /**
+     * Adds or refreshes the index entries of the given configurations using
+     * pipelined writes.
+     */
+    public int indexAll(Iterable<ProductConfigRedis> configs) {
+        return writeAll(configs, START_KEY, END_KEY, ENABLED_KEY, PRODUCT_KEY);
+    }
+
+    /**
+     * Rebuilds the whole index from the given configurations into staging
+     * keys and swaps them in with a single MULTI/EXEC, so readers see either
+     * the old or the new index and never a partially built one.
+     */
+    public int replaceAll(Iterable<ProductConfigRedis> configs) {
+        Replacement replacement = beginReplacement();
+        try {
+            replacement.addAll(configs);
+            return replacement.commit();
+        } catch (RuntimeException e) {
+            replacement.discard();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts an incremental rebuild: configurations are staged batch by batch
+     * (e.g. straight from a MongoDB cursor) and swapped in on
+     * {@link Replacement#commit()}.
+     */
+    public Replacement beginReplacement() {
+        return new Replacement(TEMP_KEY_PREFIX + UUID.randomUUID());
+    }
+
+    /**
+     * Index rebuild staged under temporary keys. Call {@link #discard()} if
+     * it is abandoned before {@link #commit()}.
+     */
+    public class Replacement {
+        private final String stagingStart;
+        private final String stagingEnd;
+        private final String stagingEnabled;
+        private final String stagingProduct;
+        private int count;
+
+        private Replacement(String stagingPrefix) {
+            this.stagingStart = stagingPrefix + ":start";
+            this.stagingEnd = stagingPrefix + ":end";
+            this.stagingEnabled = stagingPrefix + ":enabled";
+            this.stagingProduct = stagingPrefix + ":product";
+        }
+
+        public void addAll(Iterable<ProductConfigRedis> configs) {
+            count += writeAll(configs, stagingStart, stagingEnd, stagingEnabled, stagingProduct);
+        }
+
+        /**
+         * Atomically replaces the live index with the staged one and returns
+         * the number of staged configurations.
+         */
+        public int commit() {
+            Map<String, Boolean> stagedKeys = new LinkedHashMap<>();
+            stagedKeys.put(START_KEY, Boolean.TRUE.equals(redisTemplate.hasKey(stagingStart)));
+            stagedKeys.put(END_KEY, Boolean.TRUE.equals(redisTemplate.hasKey(stagingEnd)));
+            stagedKeys.put(ENABLED_KEY, Boolean.TRUE.equals(redisTemplate.hasKey(stagingEnabled)));
+            stagedKeys.put(PRODUCT_KEY, Boolean.TRUE.equals(redisTemplate.hasKey(stagingProduct)));
+            Map<String, String> stagingKeyFor = Map.of(START_KEY, stagingStart, END_KEY, stagingEnd,
+                    ENABLED_KEY, stagingEnabled, PRODUCT_KEY, stagingProduct);
+
+            redisTemplate.execute(new SessionCallback<List<Object>>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> List<Object> execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    ops.multi();
+                    // RENAME fails on a missing source, so empty staging sets simply clear the live key
+                    stagedKeys.forEach((liveKey, staged) -> {
+                        if (staged) {
+                            ops.rename(stagingKeyFor.get(liveKey), liveKey);
+                        } else {
+                            ops.delete(liveKey);
+                        }
+                    });
+                    return ops.exec();
+                }
+            });
+            return count;
+        }
+
+        public void discard() {
+            redisTemplate.delete(List.of(stagingStart, stagingEnd, stagingEnabled, stagingProduct));
+        }
+    }
+
+    /**
+     * Hands the IDs of all product configuration hashes stored in Redis to
+     * the consumer in SSCAN chunks of at most {@code chunkSize}.
+     */
+    public void forEachIdChunk(int chunkSize, Consumer<List<String>> consumer) {
+        List<String> chunk = new ArrayList<>(chunkSize);
+        try (Cursor<String> cursor = redisTemplate.opsForSet().scan(KEYSPACE_KEY,
+                ScanOptions.scanOptions().count(chunkSize).build())) {
+            while (cursor.hasNext()) {
+                chunk.add(cursor.next());
+                if (chunk.size() == chunkSize) {
+                    consumer.accept(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            consumer.accept(chunk);
+        }
+    }
+
+    /**
+     * Removes a configuration from the index.
+     */
+    public void remove(String id) {
+        removeAll(List.of(id));
+    }
+
+    /**
+     * Removes the given configurations from the index.
+     */
+    public void removeAll(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Object[] members = ids.toArray();
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                ops.opsForZSet().remove(START_KEY, members);
+                ops.opsForZSet().remove(END_KEY, members);
+                ops.opsForSet().remove(ENABLED_KEY, members);
+                ops.opsForHash().delete(PRODUCT_KEY, members);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Drops the whole index.
+     */
+    public void clear() {
+        redisTemplate.delete(INDEX_KEYS);
+    }
+
+    /**
+     * Returns the IDs of configurations that are enabled and whose window
+     * contains {@code now} (startDate inclusive, endDate exclusive). The
+     * intersection is computed by Redis in a single pipelined round trip.
+     */
+    @SuppressWarnings("unchecked")
+    public Set<String> findActiveIds(LocalDateTime now) {
+        long nowMillis = toEpochMillis(now);
+        String tempKey = TEMP_KEY_PREFIX + UUID.randomUUID();
+        String startedKey = tempKey + ":started";
+        String notEndedKey = tempKey + ":not-ended";
+        String activeKey = tempKey + ":active";
+
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                ops.opsForZSet().rangeAndStoreByScore(START_KEY, startedKey,
+                        Range.of(Range.Bound.unbounded(), Range.Bound.inclusive(nowMillis)));
+                ops.opsForZSet().rangeAndStoreByScore(END_KEY, notEndedKey,
+                        Range.of(Range.Bound.exclusive(nowMillis), Range.Bound.unbounded()));
+                ops.opsForZSet().intersectAndStore(startedKey, List.of(notEndedKey, ENABLED_KEY), activeKey);
+                ops.opsForZSet().range(activeKey, 0, -1);
+                ops.delete(List.of(startedKey, notEndedKey, activeKey));
+                return null;
+            }
+        });
+
+        Set<String> activeIds = (Set<String>) results.get(3);
+        return activeIds != null ? activeIds : Set.of();
+    }
+
+    /**
+     * Returns the distinct productIds of active configurations, resolved by
+     * a server-side Lua script in a single round trip without loading hashes.
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> findActiveProductIds(LocalDateTime now) {
+        List<String> productIds = redisTemplate.execute(ACTIVE_PRODUCT_IDS_SCRIPT, INDEX_KEYS,
+                String.valueOf(toEpochMillis(now)));
+        return productIds != null ? productIds : List.of();
+    }
+
+    /**
+     * Removes configurations whose window ended at or before {@code now} from
+     * the index, in bounded script calls so Redis is never blocked for long.
+     * The hashes themselves stay until MongoDB deletes the configuration.
+     * Returns the number of configurations removed.
+     */
+    public long pruneEnded(LocalDateTime now) {
+        String nowMillis = String.valueOf(toEpochMillis(now));
+        long total = 0;
+        while (true) {
+            Long removed = redisTemplate.execute(PRUNE_ENDED_SCRIPT, INDEX_KEYS, nowMillis,
+                    String.valueOf(PRUNE_BATCH_SIZE));
+            if (removed == null || removed == 0) {
+                return total;
+            }
+            total += removed;
+            if (removed < PRUNE_BATCH_SIZE) {
+                return total;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${redis.index.prune.interval:60000}")
+    public void scheduledPrune() {
+        if (!pruneEnabled) {
+            return;
+        }
+        try {
+            long removed = pruneEnded(LocalDateTime.now());
+            if (removed > 0) {
+                logger.info("Pruned {} ended product configs from the Redis index", removed);
+            }
+        } catch (Exception e) {
+            logger.warn("Could not prune ended product configs from the Redis index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the active product script into the Redis script cache at startup
+     * so the first request does not pay the EVAL fallback.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadScripts() {
+        try {
+            byte[] script = ACTIVE_PRODUCT_IDS_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+            String sha = redisTemplate.execute((RedisCallback<String>) connection ->
+                    connection.scriptingCommands().scriptLoad(script));
+            logger.info("Preloaded active product Lua script with SHA {}", sha);
+        } catch (Exception e) {
+            logger.warn("Could not preload active product Lua script: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Backfills the index from the existing hashes when it is missing, e.g.
+     * after upgrading an instance whose Redis data predates the index or its
+     * hash-tagged keys (the old untagged keys are dropped).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfMissing() {
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(PRODUCT_KEY))) {
+                return;
+            }
+            long startTime = System.currentTimeMillis();
+            redisTemplate.delete(LEGACY_KEYS);
+            int count = indexAll(redisRepository.findAll());
+            logger.info("Backfilled Redis product config index with {} entries in {} ms", count,
+                    System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            logger.warn("Could not backfill Redis product config index: {}", e.getMessage());
+        }
+    }
+
+    private int writeAll(Iterable<ProductConfigRedis> configs, String startKey, String endKey, String enabledKey,
+            String productKey) {
+        List<ProductConfigRedis> batch = new ArrayList<>(PIPELINE_BATCH_SIZE);
+        int count = 0;
+        for (ProductConfigRedis config : configs) {
+            batch.add(config);
+            if (batch.size() == PIPELINE_BATCH_SIZE) {
+                count += writeBatch(batch, startKey, endKey, enabledKey, productKey);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            count += writeBatch(batch, startKey, endKey, enabledKey, productKey);
+        }
+        return count;
+    }
+
+    private int writeBatch(List<ProductConfigRedis> batch, String startKey, String endKey, String enabledKey,
+            String productKey) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (ProductConfigRedis config : batch) {
+                    String id = config.getId();
+                    if (config.getStartDate() != null) {
+                        ops.opsForZSet().add(startKey, id, toEpochMillis(config.getStartDate()));
+                    } else {
+                        ops.opsForZSet().remove(startKey, id);
+                    }
+                    if (config.getEndDate() != null) {
+                        ops.opsForZSet().add(endKey, id, toEpochMillis(config.getEndDate()));
+                    } else {
+                        ops.opsForZSet().remove(endKey, id);
+                    }
+                    if (config.isEnabled()) {
+                        ops.opsForSet().add(enabledKey, id);
+                    } else {
+                        ops.opsForSet().remove(enabledKey, id);
+                    }
+                    if (config.getProductId() != null) {
+                        ops.opsForHash().put(productKey, id, config.getProductId());
+                    } else {
+                        ops.opsForHash().delete(productKey, id);
+                    }
+                }
+                return null;
+            }
+        });
+        return batch.size();
+    }
+
+    static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
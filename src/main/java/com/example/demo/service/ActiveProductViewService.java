@@ -0,0 +1,290 @@
+package com.example.demo.service;
+
+import com.example.demo.event.ActiveProductsChangedEvent;
+import com.example.demo.event.ProductConfigBoundaryEvent;
+import com.example.demo.event.ProductConfigChangedEvent;
+import com.example.demo.model.ProductConfig;
+import com.example.demo.repository.MongoStreamReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Heap-resident materialized view of the distinct active product IDs.
+ * The view is loaded from MongoDB at startup, updated incrementally by the
+ * dual-write service on every write, and flipped by
+ * {@link ProductConfigBoundaryEvent}s exactly when a startDate/endDate
+ * boundary passes. Reads return an immutable snapshot without touching Redis
+ * or MongoDB.
+ */
+@Service
+public class ActiveProductViewService {
+    private static final Logger logger = LoggerFactory.getLogger(ActiveProductViewService.class);
+
+    private final MongoStreamReader mongoStreamReader;
+    private final ProductConfigBoundaryScheduler boundaryScheduler;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // All state below is guarded by "this"
+    private Map<String, ProductConfig> configsById = new HashMap<>();
+    private Map<String, Set<String>> configIdsByProduct = new HashMap<>();
+    private final Set<String> activeConfigIds = new HashSet<>();
+    private final Map<String, Integer> activeConfigCountByProduct = new HashMap<>();
+
+    private volatile List<String> activeProductIds = List.of();
+    private volatile boolean initialized = false;
+
+    @Autowired
+    public ActiveProductViewService(MongoStreamReader mongoStreamReader,
+            ProductConfigBoundaryScheduler boundaryScheduler,
+            ApplicationEventPublisher eventPublisher) {
+        this.mongoStreamReader = mongoStreamReader;
+        this.boundaryScheduler = boundaryScheduler;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Returns the current snapshot of distinct active product IDs.
+     */
+    public List<String> getActiveProductIds() {
+        return activeProductIds;
+    }
+
+    /**
+     * Whether the view has been loaded at least once and can serve reads.
+     */
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * Loads the view from MongoDB once the application is ready and then
+     * periodically, so writes made by other instances are picked up.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${product.active-view.refresh-interval:60000}", fixedDelayString = "${product.active-view.refresh-interval:60000}")
+    public void reload() {
+        try {
+            long startTime = System.currentTimeMillis();
+            Query query = MongoStreamReader.projection("productId", "enabled", "startDate", "endDate");
+            try (Stream<ProductConfig> configs = mongoStreamReader.stream(query, ProductConfig.class)) {
+                rebuild(configs::iterator);
+            }
+            logger.info("Reloaded active product view with {} active products in {} ms",
+                    activeProductIds.size(), System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            logger.error("Failed to reload active product view: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Replaces the whole view with the given configurations.
+     */
+    public void rebuild(Iterable<ProductConfig> configs) {
+        Builder builder = newBuilder();
+        builder.addAll(configs);
+        builder.commit();
+    }
+
+    /**
+     * Starts a replacement of the whole view that is fed batch by batch, so
+     * callers streaming the collection never hold it twice; reads keep using
+     * the current view until {@link Builder#commit()} swaps it in.
+     */
+    public Builder newBuilder() {
+        return new Builder();
+    }
+
+    private synchronized void replace(Map<String, ProductConfig> configs, Map<String, Set<String>> idsByProduct) {
+        configsById = configs;
+        configIdsByProduct = idsByProduct;
+        LocalDateTime now = LocalDateTime.now();
+        activeConfigIds.clear();
+        activeConfigCountByProduct.clear();
+        for (ProductConfig config : configsById.values()) {
+            if (isActive(config, now)) {
+                activate(config);
+            }
+        }
+        boundaryScheduler.scheduleAll(configsById.values(), now);
+        // Always announced on a full rebuild, so consumers resynchronize periodically
+        publishSnapshot(true);
+        initialized = true;
+    }
+
+    /**
+     * Next generation of the view, built off to the side. Not thread-safe;
+     * a builder belongs to the rebuild that created it.
+     */
+    public final class Builder {
+        private final Map<String, ProductConfig> configs = new HashMap<>();
+        private final Map<String, Set<String>> idsByProduct = new HashMap<>();
+
+        private Builder() {
+        }
+
+        public void addAll(Iterable<ProductConfig> batch) {
+            for (ProductConfig config : batch) {
+                if (config.getId() == null) {
+                    continue;
+                }
+                ProductConfig previous = configs.put(config.getId(), config);
+                if (previous != null) {
+                    unindexByProduct(idsByProduct, previous);
+                }
+                indexByProduct(idsByProduct, config);
+            }
+        }
+
+        /**
+         * Swaps the built view in, replacing the current one.
+         */
+        public void commit() {
+            replace(configs, idsByProduct);
+        }
+    }
+
+    /**
+     * Applies a created or updated configuration to the view.
+     */
+    public synchronized void apply(ProductConfig config) {
+        if (config == null || config.getId() == null) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        ProductConfig previous = configsById.put(config.getId(), config);
+        boolean changed = false;
+        if (previous != null) {
+            changed = deactivate(previous);
+            unindexByProduct(configIdsByProduct, previous);
+        }
+        indexByProduct(configIdsByProduct, config);
+        if (isActive(config, now)) {
+            changed |= activate(config);
+        }
+        boundaryScheduler.schedule(config, now);
+        if (changed) {
+            publishSnapshot(false);
+        }
+        if (previous != null && !Objects.equals(previous.getProductId(), config.getProductId())) {
+            publishConfigChanged(previous.getProductId());
+        }
+        publishConfigChanged(config.getProductId());
+    }
+
+    /**
+     * Removes a deleted configuration from the view.
+     */
+    public synchronized void remove(String configId) {
+        ProductConfig previous = configsById.remove(configId);
+        boundaryScheduler.cancel(configId);
+        if (previous == null) {
+            return;
+        }
+        unindexByProduct(configIdsByProduct, previous);
+        if (deactivate(previous)) {
+            publishSnapshot(false);
+        }
+        publishConfigChanged(previous.getProductId());
+    }
+
+    /**
+     * Returns the configurations currently known for a product.
+     */
+    public synchronized List<ProductConfig> getConfigsForProduct(String productId) {
+        Set<String> configIds = configIdsByProduct.get(productId);
+        if (configIds == null) {
+            return List.of();
+        }
+        return configIds.stream().map(configsById::get).toList();
+    }
+
+    /**
+     * Flips a configuration when its activation window opens or closes.
+     * Events for configurations that have since been updated or deleted are
+     * ignored; the replacement already carries its own boundary.
+     */
+    @EventListener
+    public synchronized void onBoundary(ProductConfigBoundaryEvent event) {
+        ProductConfig config = event.getConfig();
+        if (configsById.get(config.getId()) != config) {
+            return;
+        }
+        boolean changed = event.getType() == ProductConfigBoundaryEvent.Type.ACTIVATED
+                ? activate(config)
+                : deactivate(config);
+        if (changed) {
+            logger.debug("Product {} {} at {}", config.getProductId(), event.getType(), event.getBoundary());
+            publishSnapshot(false);
+        }
+    }
+
+    private boolean activate(ProductConfig config) {
+        if (!activeConfigIds.add(config.getId())) {
+            return false;
+        }
+        return activeConfigCountByProduct.merge(config.getProductId(), 1, Integer::sum) == 1;
+    }
+
+    private boolean deactivate(ProductConfig config) {
+        if (!activeConfigIds.remove(config.getId())) {
+            return false;
+        }
+        Integer remaining = activeConfigCountByProduct.computeIfPresent(config.getProductId(),
+                (productId, count) -> count > 1 ? count - 1 : null);
+        return remaining == null;
+    }
+
+    private static void indexByProduct(Map<String, Set<String>> idsByProduct, ProductConfig config) {
+        if (config.getProductId() != null) {
+            idsByProduct.computeIfAbsent(config.getProductId(), productId -> new HashSet<>()).add(config.getId());
+        }
+    }
+
+    private static void unindexByProduct(Map<String, Set<String>> idsByProduct, ProductConfig config) {
+        if (config.getProductId() != null) {
+            idsByProduct.computeIfPresent(config.getProductId(), (productId, configIds) -> {
+                configIds.remove(config.getId());
+                return configIds.isEmpty() ? null : configIds;
+            });
+        }
+    }
+
+    private void publishConfigChanged(String productId) {
+        if (productId != null) {
+            eventPublisher.publishEvent(new ProductConfigChangedEvent(this, productId));
+        }
+    }
+
+    private void publishSnapshot(boolean announce) {
+        List<String> previous = activeProductIds;
+        activeProductIds = List.copyOf(activeConfigCountByProduct.keySet());
+        if (announce || !Set.copyOf(previous).equals(activeConfigCountByProduct.keySet())) {
+            eventPublisher.publishEvent(new ActiveProductsChangedEvent(this, activeProductIds));
+        }
+    }
+
+    static boolean isActive(ProductConfig config, LocalDateTime now) {
+        return config.isEnabled()
+                && config.getProductId() != null
+                && config.getStartDate() != null
+                && config.getEndDate() != null
+                && !config.getStartDate().isAfter(now)
+                && config.getEndDate().isAfter(now);
+    }
+}
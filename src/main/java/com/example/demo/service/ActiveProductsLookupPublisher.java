@@ -0,0 +1,68 @@
+package com.example.demo.service;
+
+import com.example.demo.event.ActiveProductsChangedEvent;
+import com.example.demo.repository.ActiveProductsLookupIndex;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Mirrors the active product view into the Elasticsearch terms-lookup
+ * document. Events arrive while the view holds its lock, so writes happen on
+ * a background thread and only the latest pending snapshot is written.
+ */
+@Service
+public class ActiveProductsLookupPublisher {
+    private static final Logger logger = LoggerFactory.getLogger(ActiveProductsLookupPublisher.class);
+
+    private final ActiveProductsLookupIndex lookupIndex;
+    private final AtomicReference<List<String>> pending = new AtomicReference<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "active-products-lookup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public ActiveProductsLookupPublisher(ActiveProductsLookupIndex lookupIndex) {
+        this.lookupIndex = lookupIndex;
+    }
+
+    @EventListener
+    public void onActiveProductsChanged(ActiveProductsChangedEvent event) {
+        if (pending.getAndSet(event.getProductIds()) == null) {
+            writer.execute(this::writePending);
+        }
+    }
+
+    private void writePending() {
+        List<String> productIds = pending.getAndSet(null);
+        if (productIds == null) {
+            return;
+        }
+        if (productIds.size() > ActiveProductsLookupIndex.MAX_PRODUCT_IDS) {
+            logger.warn("{} active products exceed the terms lookup limit of {}", productIds.size(),
+                    ActiveProductsLookupIndex.MAX_PRODUCT_IDS);
+        }
+        try {
+            lookupIndex.write(productIds);
+            logger.debug("Published {} active product IDs to the Elasticsearch lookup document", productIds.size());
+        } catch (Exception e) {
+            // The next full view rebuild republishes the snapshot
+            logger.error("Failed to publish active product IDs to Elasticsearch: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdownNow();
+    }
+}
@@ -1,90 +1,433 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.CacheEntry;
+import com.example.demo.event.ProductConfigBoundaryEvent;
+import com.example.demo.util.SingleFlight;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
+/**
+ * Two-tier cache for active product lists: a bounded per-instance Caffeine
+ * near cache (L1) in front of Redis (L2). Writes and evictions are broadcast
+ * over Redis pub/sub so other instances drop their L1 copies.
+ * Entries carry a soft TTL after which they are still served but refreshed
+ * in the background, and a hard TTL enforced by Redis expiry.
+ */
 @Service
-public class CacheService {
+public class CacheService implements MessageListener {
     private static final Logger logger = LoggerFactory.getLogger(CacheService.class);
 
-    private static final String ELASTICSEARCH_ACTIVE_PRODUCTS_KEY = "es:active-products";
-    private static final String MONGODB_ACTIVE_PRODUCTS_KEY = "mongo:active-products";
-    private static final long DEFAULT_TTL = 60; // seconds
+    public static final String ELASTICSEARCH_ACTIVE_PRODUCTS_KEY = "es:active-products";
+    public static final String MONGODB_ACTIVE_PRODUCTS_KEY = "mongo:active-products";
+    public static final String ELASTICSEARCH_SUPERFAST_ACTIVE_PRODUCTS_KEY = "es:active-products:superfast";
+    private static final List<String> ALL_KEYS = List.of(ELASTICSEARCH_ACTIVE_PRODUCTS_KEY,
+            MONGODB_ACTIVE_PRODUCTS_KEY, ELASTICSEARCH_SUPERFAST_ACTIVE_PRODUCTS_KEY);
+
+    private static final String ALL_KEYS_MARKER = "*";
+    private static final char MESSAGE_SEPARATOR = '|';
+    private static final long LOCK_POLL_INTERVAL_MS = 50;
 
     private final RedisTemplate<String, Object> redisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisLockService lockService;
+    private final String invalidationChannel;
+    private final Duration loadLockTtl;
+    private final Duration loadLockWaitTimeout;
+    private final long softTtlMs;
+    private final long hardTtlMs; // safety net behind boundary-driven eviction
+    private final long boundaryCoalesceWindowMs;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final Cache<String, Object> nearCache;
+    private final SingleFlight<String, Object> singleFlight = new SingleFlight<>();
+    private final ThreadPoolExecutor refreshExecutor;
+    private final ScheduledExecutorService boundaryExecutor;
+    private final AtomicBoolean boundaryEvictionPending = new AtomicBoolean();
+    private final Set<String> refreshesInFlight = ConcurrentHashMap.newKeySet();
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+    private final Counter l2Errors;
 
     @Autowired
-    public CacheService(RedisTemplate<String, Object> redisTemplate) {
+    public CacheService(RedisTemplate<String, Object> redisTemplate,
+            StringRedisTemplate stringRedisTemplate,
+            RedisLockService lockService,
+            MeterRegistry meterRegistry,
+            @Value("${cache.near.maximum-size:1000}") long nearCacheMaximumSize,
+            @Value("${cache.near.ttl:10000}") long nearCacheTtlMs,
+            @Value("${cache.near.invalidation-channel:cache:invalidation}") String invalidationChannel,
+            @Value("${cache.load-lock.ttl:10000}") long loadLockTtlMs,
+            @Value("${cache.load-lock.wait-timeout:5000}") long loadLockWaitTimeoutMs,
+            @Value("${cache.soft-ttl:30000}") long softTtlMs,
+            @Value("${cache.hard-ttl:300000}") long hardTtlMs,
+            @Value("${cache.refresh.pool-size:2}") int refreshPoolSize,
+            @Value("${cache.refresh.queue-capacity:16}") int refreshQueueCapacity,
+            @Value("${cache.boundary.coalesce-window:1000}") long boundaryCoalesceWindowMs) {
         this.redisTemplate = redisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.lockService = lockService;
+        this.invalidationChannel = invalidationChannel;
+        this.loadLockTtl = Duration.ofMillis(loadLockTtlMs);
+        this.loadLockWaitTimeout = Duration.ofMillis(loadLockWaitTimeoutMs);
+        this.softTtlMs = softTtlMs;
+        this.hardTtlMs = Math.max(hardTtlMs, softTtlMs);
+        this.boundaryCoalesceWindowMs = boundaryCoalesceWindowMs;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.refreshExecutor = new ThreadPoolExecutor(refreshPoolSize, refreshPoolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(refreshQueueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "cache-refresh-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.refreshExecutor.allowCoreThreadTimeOut(true);
+        this.boundaryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-boundary-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(nearCacheMaximumSize)
+                .expireAfterWrite(Duration.ofMillis(nearCacheTtlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, nearCache, "active-products-l1");
+        this.l2Hits = Counter.builder("cache.l2.requests").tag("cache", "active-products-l2")
+                .tag("result", "hit").register(meterRegistry);
+        this.l2Misses = Counter.builder("cache.l2.requests").tag("cache", "active-products-l2")
+                .tag("result", "miss").register(meterRegistry);
+        this.l2Errors = Counter.builder("cache.l2.requests").tag("cache", "active-products-l2")
+                .tag("result", "error").register(meterRegistry);
+    }
+
+    public String getInvalidationChannel() {
+        return invalidationChannel;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+        boundaryExecutor.shutdownNow();
     }
 
     public void cacheElasticsearchActiveProducts(List<String> activeProducts) {
+        logger.info("Caching {} Elasticsearch active products", activeProducts.size());
+        put(ELASTICSEARCH_ACTIVE_PRODUCTS_KEY, activeProducts);
+    }
+
+    public List<String> getElasticsearchActiveProducts() {
+        return get(ELASTICSEARCH_ACTIVE_PRODUCTS_KEY);
+    }
+
+    public void cacheMongoDbActiveProducts(List<String> activeProducts) {
+        logger.info("Caching {} MongoDB active products", activeProducts.size());
+        put(MONGODB_ACTIVE_PRODUCTS_KEY, activeProducts);
+    }
+
+    public List<String> getMongoDbActiveProducts() {
+        return get(MONGODB_ACTIVE_PRODUCTS_KEY);
+    }
+
+    /**
+     * Stores a value in both tiers and tells other instances to drop their
+     * near-cache copy.
+     */
+    public void put(String key, Object value) {
+        long now = System.currentTimeMillis();
+        CacheEntry entry = new CacheEntry(value, now, now + softTtlMs);
+        nearCache.put(key, entry);
         try {
-            logger.info("Caching {} Elasticsearch active products in Redis", activeProducts.size());
-            redisTemplate.opsForValue().set(ELASTICSEARCH_ACTIVE_PRODUCTS_KEY, activeProducts, DEFAULT_TTL,
-                    TimeUnit.SECONDS);
-            logger.info("Successfully cached Elasticsearch active products");
+            redisTemplate.opsForValue().set(key, entry, hardTtlMs, TimeUnit.MILLISECONDS);
         } catch (Exception e) {
-            logger.error("Error caching Elasticsearch active products: {}", e.getMessage(), e);
+            logger.error("Error caching {} in Redis: {}", key, e.getMessage(), e);
         }
+        publishInvalidation(key);
     }
 
+    /**
+     * Looks a value up in the near cache first and falls back to Redis,
+     * promoting Redis hits into the near cache. Stale values are returned as
+     * well; only {@link #getOrLoad} triggers a refresh. Returns null on a
+     * miss in both tiers.
+     */
     @SuppressWarnings("unchecked")
-    public List<String> getElasticsearchActiveProducts() {
+    public <T> T get(String key) {
+        CacheEntry entry = getEntry(key);
+        return entry != null ? (T) entry.getValue() : null;
+    }
+
+    private CacheEntry getEntry(String key) {
+        Object nearValue = nearCache.getIfPresent(key);
+        if (nearValue != null) {
+            logger.debug("Near cache hit for {}", key);
+            return (CacheEntry) nearValue;
+        }
         try {
-            Object cachedValue = redisTemplate.opsForValue().get(ELASTICSEARCH_ACTIVE_PRODUCTS_KEY);
+            Object cachedValue = redisTemplate.opsForValue().get(key);
             if (cachedValue != null) {
-                logger.info("Cache hit for Elasticsearch active products");
-                return (List<String>) cachedValue;
+                l2Hits.increment();
+                logger.info("Redis cache hit for {}", key);
+                // Values written before soft TTLs were introduced are treated as stale
+                CacheEntry entry = cachedValue instanceof CacheEntry cacheEntry
+                        ? cacheEntry
+                        : new CacheEntry(cachedValue, 0, 0);
+                nearCache.put(key, entry);
+                return entry;
             }
-            logger.info("Cache miss for Elasticsearch active products");
+            l2Misses.increment();
+            logger.info("Cache miss for {}", key);
             return null;
         } catch (Exception e) {
-            logger.error("Error retrieving Elasticsearch active products from cache: {}", e.getMessage(), e);
+            l2Errors.increment();
+            logger.error("Error retrieving {} from cache: {}", key, e.getMessage(), e);
             return null;
         }
     }
 
-    public void cacheMongoDbActiveProducts(List<String> activeProducts) {
-        try {
-            logger.info("Caching {} MongoDB active products in Redis", activeProducts.size());
-            redisTemplate.opsForValue().set(MONGODB_ACTIVE_PRODUCTS_KEY, activeProducts, DEFAULT_TTL, TimeUnit.SECONDS);
-            logger.info("Successfully cached MongoDB active products");
-        } catch (Exception e) {
-            logger.error("Error caching MongoDB active products: {}", e.getMessage(), e);
+    /**
+     * Returns the cached value or loads it on a miss. Concurrent misses for
+     * the same key on this instance share a single load, and a short Redis
+     * lock keeps other instances from running the same backend query at the
+     * same time; they wait for the winner to populate Redis instead.
+     * Past the soft TTL the stale value is returned immediately and the
+     * loader is run on the refresh executor.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getOrLoad(String key, Supplier<T> loader) {
+        CacheEntry entry = getEntry(key);
+        if (entry != null) {
+            if (entry.isStale(System.currentTimeMillis())) {
+                refreshAsync(key, loader);
+            }
+            return (T) entry.getValue();
         }
+        return (T) singleFlight.execute(key, () -> loadWithLock(key, loader));
     }
 
-    @SuppressWarnings("unchecked")
-    public List<String> getMongoDbActiveProducts() {
+    /**
+     * Recomputes a stale entry in the background. At most one refresh per key
+     * is queued on this instance, and the Redis load lock keeps other
+     * instances from refreshing the same key concurrently.
+     */
+    private <T> void refreshAsync(String key, Supplier<T> loader) {
+        if (!refreshesInFlight.add(key)) {
+            return;
+        }
         try {
-            Object cachedValue = redisTemplate.opsForValue().get(MONGODB_ACTIVE_PRODUCTS_KEY);
-            if (cachedValue != null) {
-                logger.info("Cache hit for MongoDB active products");
-                return (List<String>) cachedValue;
+            refreshExecutor.execute(() -> {
+                try {
+                    String token = lockService.tryLock(key, loadLockTtl);
+                    if (token == null) {
+                        logger.debug("Refresh of {} already running on another instance", key);
+                        return;
+                    }
+                    try {
+                        long startTime = System.currentTimeMillis();
+                        T loaded = loader.get();
+                        if (loaded != null) {
+                            put(key, loaded);
+                        }
+                        logger.info("Refreshed stale cache entry {} in {} ms", key,
+                                System.currentTimeMillis() - startTime);
+                    } finally {
+                        lockService.unlock(key, token);
+                    }
+                } catch (Exception e) {
+                    logger.error("Error refreshing cache entry {}: {}", key, e.getMessage(), e);
+                } finally {
+                    refreshesInFlight.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshesInFlight.remove(key);
+            logger.warn("Cache refresh queue full, serving stale {} without refresh", key);
+        }
+    }
+
+    private <T> T loadWithLock(String key, Supplier<T> loader) {
+        // Another flight may have populated the cache while this one was queued
+        T cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long deadline = System.currentTimeMillis() + loadLockWaitTimeout.toMillis();
+        while (true) {
+            String token = lockService.tryLock(key, loadLockTtl);
+            if (token != null) {
+                try {
+                    cached = get(key);
+                    if (cached != null) {
+                        return cached;
+                    }
+                    T loaded = loader.get();
+                    if (loaded != null) {
+                        put(key, loaded);
+                    }
+                    return loaded;
+                } finally {
+                    lockService.unlock(key, token);
+                }
             }
-            logger.info("Cache miss for MongoDB active products");
-            return null;
+
+            if (System.currentTimeMillis() >= deadline) {
+                logger.warn("Timed out waiting for the load lock on {}, loading locally", key);
+                T loaded = loader.get();
+                if (loaded != null) {
+                    put(key, loaded);
+                }
+                return loaded;
+            }
+            try {
+                Thread.sleep(LOCK_POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for cache load of " + key, e);
+            }
+            cached = get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+    }
+
+    /**
+     * Removes a single key from both tiers on every instance.
+     */
+    public void evict(String key) {
+        nearCache.invalidate(key);
+        try {
+            redisTemplate.delete(key);
         } catch (Exception e) {
-            logger.error("Error retrieving MongoDB active products from cache: {}", e.getMessage(), e);
-            return null;
+            logger.error("Error evicting {} from Redis: {}", key, e.getMessage(), e);
         }
+        publishInvalidation(key);
     }
 
     public void clearCache() {
+        logger.info("Clearing all caches");
+        nearCache.invalidateAll();
         try {
-            logger.info("Clearing all caches");
-            redisTemplate.delete(ELASTICSEARCH_ACTIVE_PRODUCTS_KEY);
-            redisTemplate.delete(MONGODB_ACTIVE_PRODUCTS_KEY);
+            redisTemplate.delete(ALL_KEYS);
             logger.info("Successfully cleared all caches");
         } catch (Exception e) {
             logger.error("Error clearing caches: {}", e.getMessage(), e);
         }
+        publishInvalidation(ALL_KEYS_MARKER);
+    }
+
+    /**
+     * Near-cache and Redis counters for diagnostics endpoints.
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = nearCache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("l1_size", nearCache.estimatedSize());
+        result.put("l1_hits", stats.hitCount());
+        result.put("l1_misses", stats.missCount());
+        result.put("l1_hit_rate", stats.hitRate());
+        result.put("l1_evictions", stats.evictionCount());
+        result.put("l2_hits", (long) l2Hits.count());
+        result.put("l2_misses", (long) l2Misses.count());
+        result.put("l2_errors", (long) l2Errors.count());
+        result.put("loads_in_flight", singleFlight.getInFlightCount());
+        result.put("refreshes_in_flight", refreshesInFlight.size());
+        result.put("refresh_queue_size", refreshExecutor.getQueue().size());
+        return result;
+    }
+
+    /**
+     * Drops near-cache entries invalidated by another instance. Messages
+     * published by this instance are ignored.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(MESSAGE_SEPARATOR);
+        if (separator < 0 || body.substring(0, separator).equals(instanceId)) {
+            return;
+        }
+        String key = body.substring(separator + 1);
+        if (ALL_KEYS_MARKER.equals(key)) {
+            nearCache.invalidateAll();
+        } else {
+            nearCache.invalidate(key);
+        }
+        logger.debug("Near cache invalidated {} by remote instance", key);
+    }
+
+    /**
+     * Evicts the active-product lists as soon as a product configuration's
+     * activation window opens or closes, instead of waiting for the TTL.
+     * Boundaries arriving within cache.boundary.coalesce-window of each other
+     * (e.g. a batch of configurations sharing a start date) share a single
+     * eviction, so the backend is reloaded once rather than once per product.
+     * Other cache entries are left alone.
+     */
+    @EventListener
+    public void onProductConfigBoundary(ProductConfigBoundaryEvent event) {
+        logger.debug("Product {} {}, scheduling eviction of active product caches",
+                event.getConfig().getProductId(), event.getType());
+        if (!boundaryEvictionPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            boundaryExecutor.schedule(this::evictActiveProducts, boundaryCoalesceWindowMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            boundaryEvictionPending.set(false);
+        }
+    }
+
+    private void evictActiveProducts() {
+        // Cleared first so a boundary during the eviction schedules another one
+        boundaryEvictionPending.set(false);
+        logger.info("Evicting active product caches after product config boundaries");
+        nearCache.invalidateAll(ALL_KEYS);
+        try {
+            redisTemplate.delete(ALL_KEYS);
+        } catch (Exception e) {
+            logger.error("Error evicting active product caches from Redis: {}", e.getMessage(), e);
+        }
+        ALL_KEYS.forEach(this::publishInvalidation);
+    }
+
+    private void publishInvalidation(String key) {
+        try {
+            stringRedisTemplate.convertAndSend(invalidationChannel, instanceId + MESSAGE_SEPARATOR + key);
+        } catch (Exception e) {
+            logger.warn("Could not publish cache invalidation for {}: {}", key, e.getMessage());
+        }
     }
 }
\ No newline at end of file
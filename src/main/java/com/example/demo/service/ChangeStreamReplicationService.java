@@ -0,0 +1,365 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ChangeStreamResumeToken;
+import com.example.demo.model.Order;
+import com.example.demo.model.OrderES;
+import com.example.demo.model.ProductConfig;
+import com.example.demo.model.ProductConfigES;
+import com.example.demo.model.ProductConfigRedis;
+import com.example.demo.repository.ChangeStreamResumeTokenRepository;
+import com.example.demo.repository.OrderESRepository;
+import com.example.demo.repository.ProductConfigESRepository;
+import com.example.demo.repository.ProductConfigFingerprintStore;
+import com.example.demo.repository.ProductConfigRedisIndex;
+import com.example.demo.repository.ProductConfigRedisRepository;
+import com.example.demo.util.ProductConfigFingerprint;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Replicates MongoDB changes on the orders and product_configs collections to
+ * Elasticsearch and Redis by tailing change streams, so replication cost is
+ * proportional to churn rather than collection size. Events are applied in
+ * micro-batches and the resume token is persisted after each batch, giving
+ * at-least-once delivery across restarts. Requires a replica set.
+ */
+@Service
+@ConditionalOnProperty(name = "replication.change-streams.enabled", havingValue = "true")
+public class ChangeStreamReplicationService {
+    private static final Logger logger = LoggerFactory.getLogger(ChangeStreamReplicationService.class);
+
+    static final String ORDERS_COLLECTION = "orders";
+    static final String PRODUCT_CONFIGS_COLLECTION = "product_configs";
+
+    // Server error code for a resume token that has fallen off the oplog
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+
+    private final MongoTemplate mongoTemplate;
+    private final ChangeStreamResumeTokenRepository tokenRepository;
+    private final OrderESRepository orderESRepository;
+    private final ProductConfigESRepository productConfigESRepository;
+    private final ProductConfigRedisRepository redisRepository;
+    private final ProductConfigRedisIndex redisIndex;
+    private final ProductConfigFingerprintStore fingerprintStore;
+    private final ActiveProductViewService activeProductView;
+    private final ElasticsearchService elasticsearchService;
+    private final ProductConfigDualWriteService dualWriteService;
+    private final OrderEnrichmentService orderEnrichmentService;
+
+    @Value("${replication.change-streams.batch-size:500}")
+    private int batchSize;
+
+    @Value("${replication.change-streams.max-batch-delay:200}")
+    private long maxBatchDelayMs;
+
+    @Value("${replication.change-streams.retry-delay:5000}")
+    private long retryDelayMs;
+
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    @Autowired
+    public ChangeStreamReplicationService(MongoTemplate mongoTemplate,
+            ChangeStreamResumeTokenRepository tokenRepository,
+            OrderESRepository orderESRepository,
+            ProductConfigESRepository productConfigESRepository,
+            ProductConfigRedisRepository redisRepository,
+            ProductConfigRedisIndex redisIndex,
+            ProductConfigFingerprintStore fingerprintStore,
+            ActiveProductViewService activeProductView,
+            ElasticsearchService elasticsearchService,
+            ProductConfigDualWriteService dualWriteService,
+            OrderEnrichmentService orderEnrichmentService) {
+        this.mongoTemplate = mongoTemplate;
+        this.tokenRepository = tokenRepository;
+        this.orderESRepository = orderESRepository;
+        this.productConfigESRepository = productConfigESRepository;
+        this.redisRepository = redisRepository;
+        this.redisIndex = redisIndex;
+        this.fingerprintStore = fingerprintStore;
+        this.activeProductView = activeProductView;
+        this.elasticsearchService = elasticsearchService;
+        this.dualWriteService = dualWriteService;
+        this.orderEnrichmentService = orderEnrichmentService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        startWorker(ORDERS_COLLECTION, this::applyOrderChanges,
+                elasticsearchService::syncOrdersToElasticsearch);
+        startWorker(PRODUCT_CONFIGS_COLLECTION, this::applyProductConfigChanges, () -> {
+            elasticsearchService.syncProductConfigsToElasticsearch();
+            dualWriteService.syncFromMongoToRedis();
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Applies a micro-batch of order changes to Elasticsearch. Only the last
+     * change per document is applied.
+     */
+    public void applyOrderChanges(List<ChangeStreamDocument<Document>> events) {
+        Map<String, OrderES> latest = collapse(events, document ->
+                orderEnrichmentService.toOrderES(mongoTemplate.getConverter().read(Order.class, document)));
+
+        List<OrderES> upserts = latest.values().stream().filter(Objects::nonNull).toList();
+        List<String> deletes = deletedIds(latest);
+        if (!upserts.isEmpty()) {
+            orderESRepository.saveAll(upserts);
+        }
+        if (!deletes.isEmpty()) {
+            orderESRepository.deleteAllById(deletes);
+        }
+        logger.debug("Replicated {} order upserts and {} deletes", upserts.size(), deletes.size());
+    }
+
+    /**
+     * Applies a micro-batch of product configuration changes to Redis, the
+     * Redis time index, Elasticsearch and the in-process active product view.
+     */
+    public void applyProductConfigChanges(List<ChangeStreamDocument<Document>> events) {
+        Map<String, ProductConfig> latest = collapse(events, document ->
+                mongoTemplate.getConverter().read(ProductConfig.class, document));
+
+        List<ProductConfig> upserts = latest.values().stream().filter(Objects::nonNull).toList();
+        List<String> deletes = deletedIds(latest);
+        if (!upserts.isEmpty()) {
+            List<ProductConfigRedis> redisConfigs = upserts.stream()
+                    .map(ProductConfigRedis::fromProductConfig)
+                    .toList();
+            redisRepository.saveAll(redisConfigs);
+            redisIndex.indexAll(redisConfigs);
+            Map<String, String> fingerprints = new LinkedHashMap<>();
+            upserts.forEach(config -> fingerprints.put(config.getId(), ProductConfigFingerprint.of(config)));
+            fingerprintStore.putAll(fingerprints);
+            productConfigESRepository.saveAll(upserts.stream().map(ProductConfigES::fromProductConfig).toList());
+            upserts.forEach(activeProductView::apply);
+        }
+        if (!deletes.isEmpty()) {
+            redisRepository.deleteAllById(deletes);
+            redisIndex.removeAll(deletes);
+            fingerprintStore.removeAll(deletes);
+            productConfigESRepository.deleteAllById(deletes);
+            deletes.forEach(activeProductView::remove);
+        }
+        logger.debug("Replicated {} product config upserts and {} deletes", upserts.size(), deletes.size());
+    }
+
+    private void startWorker(String collection, Consumer<List<ChangeStreamDocument<Document>>> applier,
+            Runnable resync) {
+        Thread worker = new Thread(() -> runStream(collection, applier, resync),
+                "change-stream-" + collection);
+        worker.setDaemon(true);
+        worker.start();
+        workers.add(worker);
+    }
+
+    /**
+     * Tails the collection until shutdown, reopening the stream from the last
+     * persisted token after errors. When the token is no longer in the oplog
+     * a new stream is opened first and the collection is resynced in full, so
+     * no change falls into the gap.
+     */
+    private void runStream(String collection, Consumer<List<ChangeStreamDocument<Document>>> applier,
+            Runnable resync) {
+        boolean resyncRequired = false;
+        while (running) {
+            BsonDocument resumeToken = resyncRequired ? null : loadToken(collection);
+            ChangeStreamIterable<Document> stream = mongoTemplate.getCollection(collection)
+                    .watch()
+                    .fullDocument(FullDocument.UPDATE_LOOKUP)
+                    .maxAwaitTime(maxBatchDelayMs, TimeUnit.MILLISECONDS)
+                    .batchSize(batchSize);
+            if (resumeToken != null) {
+                stream = stream.resumeAfter(resumeToken);
+            }
+
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+                logger.info("Change stream on {} opened {}", collection,
+                        resumeToken != null ? "from persisted resume token" : "at current position");
+                if (resyncRequired) {
+                    resync.run();
+                    saveToken(collection, cursor.getResumeToken());
+                    resyncRequired = false;
+                }
+                resyncRequired = consume(collection, cursor, applier);
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() == CHANGE_STREAM_HISTORY_LOST) {
+                    logger.warn("Resume token for {} is no longer in the oplog, resyncing", collection);
+                    resyncRequired = true;
+                    continue;
+                }
+                logger.error("Change stream on {} failed: {}", collection, e.getMessage(), e);
+                pause();
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                logger.error("Change stream on {} failed: {}", collection, e.getMessage(), e);
+                pause();
+            }
+        }
+    }
+
+    /**
+     * Reads events into micro-batches bounded by size and delay. Returns true
+     * when the stream was invalidated and the collection must be resynced.
+     */
+    private boolean consume(String collection, MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor,
+            Consumer<List<ChangeStreamDocument<Document>>> applier) {
+        List<ChangeStreamDocument<Document>> batch = new ArrayList<>(batchSize);
+        long batchStartedAt = 0;
+        BsonDocument lastSavedToken = null;
+
+        while (running) {
+            ChangeStreamDocument<Document> event = cursor.tryNext();
+            if (event != null) {
+                if (event.getOperationType() == OperationType.INVALIDATE
+                        || event.getOperationType() == OperationType.DROP) {
+                    flush(collection, cursor, applier, batch);
+                    logger.warn("Change stream on {} was invalidated ({})", collection, event.getOperationType());
+                    return true;
+                }
+                if (batch.isEmpty()) {
+                    batchStartedAt = System.currentTimeMillis();
+                }
+                batch.add(event);
+            }
+
+            boolean full = batch.size() >= batchSize;
+            boolean due = !batch.isEmpty()
+                    && (event == null || System.currentTimeMillis() - batchStartedAt >= maxBatchDelayMs);
+            if (full || due) {
+                lastSavedToken = flush(collection, cursor, applier, batch);
+            } else if (batch.isEmpty()) {
+                // Keep the persisted position moving while idle so it does not age out of the oplog
+                BsonDocument token = cursor.getResumeToken();
+                if (token != null && !token.equals(lastSavedToken)) {
+                    saveToken(collection, token);
+                    lastSavedToken = token;
+                }
+            }
+        }
+        return false;
+    }
+
+    private BsonDocument flush(String collection, MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor,
+            Consumer<List<ChangeStreamDocument<Document>>> applier, List<ChangeStreamDocument<Document>> batch) {
+        if (!batch.isEmpty()) {
+            long startTime = System.currentTimeMillis();
+            applier.accept(batch);
+            logger.info("Replicated {} {} changes in {} ms", batch.size(), collection,
+                    System.currentTimeMillis() - startTime);
+            batch.clear();
+        }
+        BsonDocument token = cursor.getResumeToken();
+        saveToken(collection, token);
+        return token;
+    }
+
+    /**
+     * Collapses a batch to the final state of each document, mapping deleted
+     * documents to null.
+     */
+    private static <T> Map<String, T> collapse(List<ChangeStreamDocument<Document>> events,
+            Function<Document, T> converter) {
+        Map<String, T> latest = new LinkedHashMap<>();
+        for (ChangeStreamDocument<Document> event : events) {
+            String id = idOf(event.getDocumentKey());
+            if (id == null) {
+                continue;
+            }
+            switch (event.getOperationType()) {
+                case INSERT, UPDATE, REPLACE -> {
+                    // The document may have been deleted before the update lookup; its delete event follows
+                    if (event.getFullDocument() != null) {
+                        latest.put(id, converter.apply(event.getFullDocument()));
+                    }
+                }
+                case DELETE -> latest.put(id, null);
+                default -> {
+                }
+            }
+        }
+        return latest;
+    }
+
+    private static <T> List<String> deletedIds(Map<String, T> latest) {
+        return latest.entrySet().stream()
+                .filter(entry -> entry.getValue() == null)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private static String idOf(BsonDocument documentKey) {
+        if (documentKey == null) {
+            return null;
+        }
+        BsonValue id = documentKey.get("_id");
+        if (id == null) {
+            return null;
+        }
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        return id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+    private BsonDocument loadToken(String collection) {
+        return tokenRepository.findById(collection)
+                .map(saved -> BsonDocument.parse(saved.getToken()))
+                .orElse(null);
+    }
+
+    private void saveToken(String collection, BsonDocument token) {
+        if (token == null) {
+            return;
+        }
+        ChangeStreamResumeToken saved = new ChangeStreamResumeToken();
+        saved.setId(collection);
+        saved.setToken(token.toJson());
+        saved.setUpdatedAt(LocalDateTime.now());
+        tokenRepository.save(saved);
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(retryDelayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.example.demo.model.Order;
 import com.example.demo.model.OrderES;
 import com.example.demo.model.ProductConfig;
 import com.example.demo.model.ProductConfigES;
+import com.example.demo.repository.CompositeAggregationPager;
+import com.example.demo.repository.MongoStreamReader;
 import com.example.demo.repository.OrderESRepository;
 import com.example.demo.repository.OrderESRepositoryCustom;
 import com.example.demo.repository.OrderRepository;
@@ -13,11 +15,11 @@ import com.example.demo.repository.ProductConfigRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.query.Query;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
-import co.elastic.clients.json.JsonData;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -25,14 +27,16 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.io.StringReader;
 
 @Service
 public class ElasticsearchService {
 
     private static final Logger logger = LoggerFactory.getLogger(ElasticsearchService.class);
-    private static final int BATCH_SIZE = 100; // Small batch size to avoid timeout
 
     @Autowired
     private OrderRepository orderRepository;
@@ -52,6 +56,21 @@ public class ElasticsearchService {
     @Autowired
     private ElasticsearchClient elasticsearchClient;
 
+    @Autowired
+    private OrderBulkIndexer orderBulkIndexer;
+
+    @Autowired
+    private MongoStreamReader mongoStreamReader;
+
+    @Autowired
+    private CompositeAggregationPager compositeAggregationPager;
+
+    @Autowired
+    private OrderEnrichmentService orderEnrichmentService;
+
+    @Autowired
+    private ProductOrderSummaryService summaryService;
+
     /**
      * Debug method to test product configuration queries
      */
@@ -201,67 +220,53 @@ public class ElasticsearchService {
     }
 
     /**
-     * Synchronize all orders from MongoDB to Elasticsearch
+     * Synchronize all orders from MongoDB to Elasticsearch. Orders are read
+     * through a cursor and fed to the bulk ingester, so memory use does not
+     * grow with the size of the collection.
      */
     public void syncOrdersToElasticsearch() {
         long startTime = System.currentTimeMillis();
         logger.info("Starting synchronization of orders from MongoDB to Elasticsearch");
 
-        List<Order> allOrders = orderRepository.findAll();
-        int totalOrders = allOrders.size();
-        logger.info("Found {} orders to synchronize", totalOrders);
-
-        // Process in small batches
-        for (int i = 0; i < totalOrders; i += BATCH_SIZE) {
-            int end = Math.min(i + BATCH_SIZE, totalOrders);
-            List<OrderES> batchOrdersES = allOrders.subList(i, end).stream()
-                    .map(OrderES::fromOrder)
-                    .collect(Collectors.toList());
-
-            try {
-                orderESRepository.saveAll(batchOrdersES);
-                logger.info("Synchronized batch {}-{} of {} orders to Elasticsearch",
-                        i, end, totalOrders);
-            } catch (Exception e) {
-                logger.error("Error synchronizing batch {}-{}: {}", i, end, e.getMessage());
-            }
+        OrderBulkIndexer.Progress progress;
+        try (OrderBulkIndexer.Session session = orderBulkIndexer.openSession();
+                Stream<Order> orders = mongoStreamReader.stream(new Query(), Order.class)) {
+            progress = session.getTotal();
+            orders.map(orderEnrichmentService::toOrderES).forEach(session::add);
         }
 
         long endTime = System.currentTimeMillis();
-        logger.info("Synchronized {} orders to Elasticsearch in {} ms",
-                totalOrders, (endTime - startTime));
+        logger.info("Synchronized {} orders to Elasticsearch in {} ms ({} failed)",
+                progress.getIndexed(), (endTime - startTime), progress.getFailed());
     }
 
     /**
-     * Synchronize all product configurations from MongoDB to Elasticsearch
+     * Synchronize all product configurations from MongoDB to Elasticsearch,
+     * reading MongoDB through a cursor one batch at a time
      */
     public void syncProductConfigsToElasticsearch() {
         long startTime = System.currentTimeMillis();
         logger.info("Starting synchronization of product configs from MongoDB to Elasticsearch");
 
-        List<ProductConfig> allConfigs = productConfigRepository.findAll();
-        int totalConfigs = allConfigs.size();
-        logger.info("Found {} product configs to synchronize", totalConfigs);
-
-        // Process in small batches
-        for (int i = 0; i < totalConfigs; i += BATCH_SIZE) {
-            int end = Math.min(i + BATCH_SIZE, totalConfigs);
-            List<ProductConfigES> batchConfigsES = allConfigs.subList(i, end).stream()
+        AtomicLong synced = new AtomicLong();
+        long totalConfigs = mongoStreamReader.forEachBatch(new Query(), ProductConfig.class, batch -> {
+            List<ProductConfigES> batchConfigsES = batch.stream()
                     .map(ProductConfigES::fromProductConfig)
                     .collect(Collectors.toList());
 
             try {
                 productConfigESRepository.saveAll(batchConfigsES);
-                logger.info("Synchronized batch {}-{} of {} product configs to Elasticsearch",
-                        i, end, totalConfigs);
+                logger.info("Synchronized batch of {} product configs to Elasticsearch ({} so far)",
+                        batchConfigsES.size(), synced.addAndGet(batchConfigsES.size()));
             } catch (Exception e) {
-                logger.error("Error synchronizing batch {}-{}: {}", i, end, e.getMessage());
+                logger.error("Error synchronizing batch of {} product configs: {}", batchConfigsES.size(),
+                        e.getMessage());
             }
-        }
+        });
 
         long endTime = System.currentTimeMillis();
-        logger.info("Synchronized {} product configs to Elasticsearch in {} ms",
-                totalConfigs, (endTime - startTime));
+        logger.info("Synchronized {} of {} product configs to Elasticsearch in {} ms",
+                synced.get(), totalConfigs, (endTime - startTime));
     }
 
     /**
@@ -279,6 +284,14 @@ public class ElasticsearchService {
         return orderESRepositoryCustom.findDistinctActiveProductsESNative();
     }
 
+    /**
+     * Find distinct active product IDs from orders stamped with their product's
+     * configuration window, in a single filtered aggregation
+     */
+    public List<String> findDistinctActiveProductsDenormalized() {
+        return orderESRepositoryCustom.findDistinctActiveProductsDenormalized();
+    }
+
     /**
      * Find distinct active product IDs using optimized Elasticsearch query
      * High-performance implementation for benchmarking
@@ -297,127 +310,48 @@ public class ElasticsearchService {
     }
 
     /**
-     * Find distinct active product IDs using Elasticsearch - optimized for caching
+     * Non-blocking variants for controllers that return the future, so the
+     * request thread is released while Elasticsearch is working
+     */
+    public CompletableFuture<List<String>> findDistinctActiveProductsESNativeAsync() {
+        return orderESRepositoryCustom.findDistinctActiveProductsESNativeAsync();
+    }
+
+    public CompletableFuture<List<String>> findDistinctActiveProductsOptimizedAsync() {
+        return orderESRepositoryCustom.findDistinctActiveProductsOptimizedAsync();
+    }
+
+    public CompletableFuture<List<String>> findDistinctActiveProductsDenormalizedAsync() {
+        return orderESRepositoryCustom.findDistinctActiveProductsDenormalizedAsync();
+    }
+
+    /**
+     * Find distinct active product IDs using Elasticsearch - optimized for caching.
+     * Product IDs of completed orders are paged through with a composite
+     * aggregation and each page is filtered to active configurations before
+     * the next one is fetched, so the result is complete at any cardinality.
      */
     public List<String> findDistinctActiveProductsOptimizedForCache() {
         long startTime = System.currentTimeMillis();
         logger.info("Finding distinct active products using optimized approach for Redis caching");
 
-        // Use the superfast implementation since it's the most optimized
         try {
-            // Step 1: Get all completed orders
-            long queryStartTime = System.currentTimeMillis();
-            logger.info("Step 1: Querying completed orders");
-
-            // Use a raw JSON query for maximum performance
-            String orderQueryJson = "{\"query\":{\"term\":{\"status.keyword\":\"COMPLETED\"}}}";
-
-            SearchRequest orderRequest = new SearchRequest.Builder()
-                    .index("orders")
-                    .withJson(new StringReader(orderQueryJson))
-                    .size(0) // We don't need documents, just aggregation
-                    .aggregations("products", a -> a
-                            .terms(t -> t
-                                    .field("productId.keyword")
-                                    .size(10000))) // Get all unique product IDs
-                    .build();
-
-            SearchResponse<Void> orderResponse = elasticsearchClient.search(orderRequest, Void.class);
-
-            // Extract product IDs from aggregation
-            List<String> productIds = new ArrayList<>();
-
-            if (orderResponse.aggregations() != null &&
-                    orderResponse.aggregations().get("products") != null) {
-
-                var agg = orderResponse.aggregations().get("products").sterms();
-                if (agg != null && agg.buckets() != null && agg.buckets().array() != null) {
-                    for (var bucket : agg.buckets().array()) {
-                        if (bucket.key() != null) {
-                            productIds.add(bucket.key().toString());
-                        }
-                    }
-                }
-            }
-
-            long step1Time = System.currentTimeMillis() - queryStartTime;
-            logger.info("Step 1 completed in {} ms, found {} distinct product IDs",
-                    step1Time, productIds.size());
-
-            if (productIds.isEmpty()) {
-                logger.warn("No product IDs found in completed orders");
-                return new ArrayList<>();
-            }
-
-            // Step 2: Find active product configurations
-            long step2StartTime = System.currentTimeMillis();
-            logger.info("Step 2: Finding active product configurations");
-
             LocalDateTime now = LocalDateTime.now();
-            String formattedDate = now.format(java.time.format.DateTimeFormatter.ISO_DATE_TIME);
-
-            // Convert String List to List<FieldValue>
-            List<co.elastic.clients.elasticsearch._types.FieldValue> fieldValues = productIds.stream()
-                    .map(id -> co.elastic.clients.elasticsearch._types.FieldValue.of(id))
-                    .collect(java.util.stream.Collectors.toList());
-
-            // Build efficient query for active configurations
-            SearchRequest configRequest = new SearchRequest.Builder()
-                    .index("product_configs")
-                    .size(productIds.size())
-                    .source(s -> s.filter(f -> f.includes("productId")))
-                    .query(q -> q
-                            .bool(b -> {
-                                // Terms query for all product IDs at once
-                                b.must(m -> m
-                                        .terms(t -> t
-                                                .field("productId.keyword")
-                                                .terms(ft -> ft.value(fieldValues))));
-
-                                // Filter for enabled configurations
-                                b.must(m -> m
-                                        .term(t -> t
-                                                .field("enabled")
-                                                .value(true)));
-
-                                // Filter for date range
-                                b.must(m -> m
-                                        .range(r -> r
-                                                .field("startDate")
-                                                .lte(JsonData.of(formattedDate))));
-
-                                b.must(m -> m
-                                        .range(r -> r
-                                                .field("endDate")
-                                                .gte(JsonData.of(formattedDate))));
-
-                                return b;
-                            }))
-                    .build();
-
-            // Execute query
-            SearchResponse<JsonData> configResponse = elasticsearchClient.search(configRequest, JsonData.class);
-
-            // Extract active product IDs
+
             List<String> activeProducts = new ArrayList<>();
-            if (configResponse.hits().hits() != null) {
-                for (Hit<JsonData> hit : configResponse.hits().hits()) {
-                    if (hit.source() != null) {
-                        try {
-                            String productId = hit.source().to(Map.class).get("productId").toString();
-                            activeProducts.add(productId);
-                        } catch (Exception e) {
-                            logger.warn("Error extracting product ID: {}", e.getMessage());
-                        }
-                    }
-                }
-            }
+            co.elastic.clients.elasticsearch._types.query_dsl.Query completedOrders =
+                    co.elastic.clients.elasticsearch._types.query_dsl.Query.of(q -> q
+                            .term(t -> t
+                                    .field("status.keyword")
+                                    .value("COMPLETED")));
 
-            long step2Time = System.currentTimeMillis() - step2StartTime;
-            long totalTime = System.currentTimeMillis() - startTime;
+            long distinctProducts = compositeAggregationPager.forEachValuePage("orders", completedOrders,
+                    "productId.keyword", productIds -> activeProducts.addAll(
+                            productConfigESRepository.findActiveProductIdsAmong(productIds, now)));
 
-            logger.info("Step 2 completed in {} ms, found {} active products", step2Time, activeProducts.size());
-            logger.info("Total execution time: {} ms", totalTime);
+            long totalTime = System.currentTimeMillis() - startTime;
+            logger.info("Found {} active products among {} distinct ordered products in {} ms",
+                    activeProducts.size(), distinctProducts, totalTime);
 
             return activeProducts;
 
@@ -453,6 +387,9 @@ public class ElasticsearchService {
         productConfigRepository.saveAll(configs);
         productConfigESRepository.saveAll(configsES);
 
+        Map<String, ProductConfig> configsByProduct = configs.stream()
+                .collect(Collectors.toMap(ProductConfig::getProductId, config -> config));
+
         // Generate orders
         List<Order> orders = new ArrayList<>();
         List<OrderES> ordersES = new ArrayList<>();
@@ -469,7 +406,7 @@ public class ElasticsearchService {
             order.setUpdatedAt(java.time.LocalDateTime.now());
             orders.add(order);
 
-            ordersES.add(OrderES.fromOrder(order));
+            ordersES.add(OrderES.fromOrder(order, configsByProduct.get(order.getProductId())));
         }
 
         // Save in batches to prevent memory issues
@@ -481,6 +418,9 @@ public class ElasticsearchService {
             logger.info("Saved batch {} to {}", i, end);
         }
 
+        // Bulk inserts bypass the per-order summary update
+        summaryService.rebuild();
+
         long endTime = System.currentTimeMillis();
         logger.info("Generated large test dataset in {} ms", (endTime - startTime));
     }
@@ -1,14 +1,30 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.OrderPageDTO;
+import com.example.demo.dto.ProductSummaryDTO;
 import com.example.demo.model.Order;
+import com.example.demo.repository.MongoStreamReader;
 import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.OrderRepositoryCustom;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service for retrieving orders from MongoDB based on active product
@@ -20,14 +36,23 @@ public class MongoDbOrderService {
     private static final Logger logger = LoggerFactory.getLogger(MongoDbOrderService.class);
 
     private final OrderRepository orderRepository;
+    private final OrderRepositoryCustom orderRepositoryCustom;
     private final ProductConfigDualWriteService dualWriteService;
+    private final MongoTemplate mongoTemplate;
+    private final MongoStreamReader mongoStreamReader;
 
     @Autowired
     public MongoDbOrderService(
             OrderRepository orderRepository,
-            ProductConfigDualWriteService dualWriteService) {
+            OrderRepositoryCustom orderRepositoryCustom,
+            ProductConfigDualWriteService dualWriteService,
+            MongoTemplate mongoTemplate,
+            MongoStreamReader mongoStreamReader) {
         this.orderRepository = orderRepository;
+        this.orderRepositoryCustom = orderRepositoryCustom;
         this.dualWriteService = dualWriteService;
+        this.mongoTemplate = mongoTemplate;
+        this.mongoStreamReader = mongoStreamReader;
     }
 
     /**
@@ -57,6 +82,105 @@ public class MongoDbOrderService {
         return orders;
     }
 
+    /**
+     * Gets one page of orders for active products in (productId, _id) order,
+     * seeking past the cursor of the previous page instead of skipping, so
+     * every page costs the same however deep it is. A null cursor starts at
+     * the first page.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public OrderPageDTO getOrdersForActiveProductsPage(String cursor, int size) {
+        long startTime = System.currentTimeMillis();
+        List<String> activeProductIds = dualWriteService.getDistinctActiveProductIds().stream()
+                .sorted()
+                .distinct()
+                .collect(Collectors.toList());
+
+        Criteria criteria;
+        if (cursor == null) {
+            criteria = Criteria.where("productId").in(activeProductIds);
+        } else {
+            String[] position = decodeCursor(cursor);
+            String afterId = position[0];
+            String afterProductId = position[1];
+
+            // Rest of the current product, then every later product; each branch is a
+            // tight index range on (productId, _id) and the branches merge in sort order
+            List<Criteria> branches = new ArrayList<>();
+            if (activeProductIds.contains(afterProductId)) {
+                branches.add(Criteria.where("productId").is(afterProductId).and("_id").gt(afterId));
+            }
+            List<String> laterProductIds = activeProductIds.stream()
+                    .filter(productId -> productId.compareTo(afterProductId) > 0)
+                    .collect(Collectors.toList());
+            if (!laterProductIds.isEmpty()) {
+                branches.add(Criteria.where("productId").in(laterProductIds));
+            }
+            criteria = branches.isEmpty() ? null : new Criteria().orOperator(branches);
+        }
+
+        OrderPageDTO page = new OrderPageDTO();
+        List<Order> orders = List.of();
+        if (criteria != null && !activeProductIds.isEmpty()) {
+            // One extra order tells whether another page follows
+            Query query = new Query(criteria)
+                    .with(Sort.by(Sort.Direction.ASC, "productId", "_id"))
+                    .limit(size + 1);
+            orders = mongoTemplate.find(query, Order.class);
+        }
+        if (orders.size() > size) {
+            orders = orders.subList(0, size);
+            Order last = orders.get(size - 1);
+            page.setNextCursor(encodeCursor(last.getId(), last.getProductId()));
+        }
+        page.setOrders(orders);
+        page.setSize(orders.size());
+
+        long duration = System.currentTimeMillis() - startTime;
+        logger.info("Found page of {} orders for active products in {} ms", orders.size(), duration);
+
+        return page;
+    }
+
+    /**
+     * Hands every order for active products to the consumer as the MongoDB
+     * cursor yields it, without collecting them. Returns the number of
+     * orders handed on.
+     */
+    public long streamOrdersForActiveProducts(Consumer<Order> consumer) {
+        List<String> activeProductIds = dualWriteService.getDistinctActiveProductIds();
+        if (activeProductIds.isEmpty()) {
+            logger.warn("No active product IDs found");
+            return 0;
+        }
+
+        long count = 0;
+        Query query = new Query(Criteria.where("productId").in(activeProductIds));
+        try (Stream<Order> orders = mongoStreamReader.stream(query, Order.class)) {
+            for (Order order : (Iterable<Order>) orders::iterator) {
+                consumer.accept(order);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // _id (an ObjectId hex string, so it never contains ':') first, then productId
+    private static String encodeCursor(String id, String productId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((id + ":" + productId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String[] position = decoded.split(":", 2);
+        if (position.length != 2 || position[0].isEmpty()) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return position;
+    }
+
     /**
      * Gets all active products with orders.
      * Returns only product IDs that have at least one order.
@@ -85,6 +209,29 @@ public class MongoDbOrderService {
         return productsWithOrders;
     }
 
+    /**
+     * Gets order statistics for those of the given products that are active,
+     * aggregated by MongoDB so no orders are loaded into the application.
+     */
+    public List<ProductSummaryDTO> getProductStats(Collection<String> productIds) {
+        Set<String> activeProductIds = new HashSet<>(dualWriteService.getDistinctActiveProductIds());
+        List<String> requested = productIds.stream()
+                .filter(activeProductIds::contains)
+                .distinct()
+                .collect(Collectors.toList());
+        if (requested.isEmpty()) {
+            return List.of();
+        }
+        return orderRepositoryCustom.summarizeOrdersByProduct(requested);
+    }
+
+    /**
+     * Whether the product currently has an active configuration.
+     */
+    public boolean isProductActive(String productId) {
+        return dualWriteService.getDistinctActiveProductIds().contains(productId);
+    }
+
     /**
      * Gets orders for a specific product ID.
      * Only returns orders if the product is active.
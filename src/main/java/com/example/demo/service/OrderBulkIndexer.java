@@ -0,0 +1,262 @@
+package com.example.demo.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkIngester;
+import co.elastic.clients.elasticsearch._helpers.bulk.BulkListener;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import com.example.demo.model.OrderES;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams {@link OrderES} documents into the orders index through the
+ * elasticsearch-java {@link BulkIngester}. Requests are flushed by operation
+ * count, byte size or interval; once the configured number of bulk requests
+ * is in flight, {@link Session#add} blocks, giving natural backpressure to
+ * the producer. Items rejected with a retryable status (429 or 5xx) are
+ * re-queued with exponential backoff.
+ */
+@Service
+public class OrderBulkIndexer {
+    private static final Logger logger = LoggerFactory.getLogger(OrderBulkIndexer.class);
+
+    private static final String ORDERS_INDEX = "orders";
+
+    private final ElasticsearchClient elasticsearchClient;
+
+    @Value("${elasticsearch.bulk.max-operations:1000}")
+    private int maxOperations;
+
+    @Value("${elasticsearch.bulk.max-size-bytes:5242880}")
+    private long maxSizeBytes;
+
+    @Value("${elasticsearch.bulk.max-concurrent-requests:2}")
+    private int maxConcurrentRequests;
+
+    @Value("${elasticsearch.bulk.flush-interval:1000}")
+    private long flushIntervalMs;
+
+    @Value("${elasticsearch.bulk.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${elasticsearch.bulk.retry-backoff:500}")
+    private long retryBackoffMs;
+
+    @Autowired
+    public OrderBulkIndexer(ElasticsearchClient elasticsearchClient) {
+        this.elasticsearchClient = elasticsearchClient;
+    }
+
+    /**
+     * Opens an ingestion session. Sessions are thread-safe, so several
+     * producers can share one; closing it waits for every document to be
+     * acknowledged or to fail permanently.
+     */
+    public Session openSession() {
+        return new Session();
+    }
+
+    /**
+     * Acknowledgement counters for a group of documents, e.g. one session or
+     * one partition of a sliced export, plus the IDs of the documents that
+     * failed permanently since they were last drained.
+     */
+    public static class Progress {
+        private final AtomicLong outstanding = new AtomicLong();
+        private final AtomicLong indexed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final Queue<String> failedIds = new ConcurrentLinkedQueue<>();
+
+        public long getOutstanding() {
+            return outstanding.get();
+        }
+
+        public long getIndexed() {
+            return indexed.get();
+        }
+
+        public long getFailed() {
+            return failed.get();
+        }
+
+        /**
+         * Removes and returns the IDs of the documents that failed since the
+         * previous call.
+         */
+        public List<String> drainFailedIds() {
+            List<String> ids = new ArrayList<>();
+            for (String id = failedIds.poll(); id != null; id = failedIds.poll()) {
+                ids.add(id);
+            }
+            return ids;
+        }
+
+        private void submitted() {
+            outstanding.incrementAndGet();
+        }
+
+        private synchronized void completed(boolean success) {
+            (success ? indexed : failed).incrementAndGet();
+            if (outstanding.decrementAndGet() == 0) {
+                notifyAll();
+            }
+        }
+
+        private synchronized void awaitCompletion(long maxWaitMs) throws InterruptedException {
+            if (outstanding.get() > 0) {
+                wait(maxWaitMs);
+            }
+        }
+    }
+
+    private record Pending(OrderES document, Progress progress, int attempt) {
+    }
+
+    public class Session implements AutoCloseable {
+        private final Progress total = new Progress();
+        private final ScheduledExecutorService retryScheduler;
+        private final BulkIngester<Pending> ingester;
+
+        private Session() {
+            this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "order-bulk-retry");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.ingester = BulkIngester.of(b -> b
+                    .client(elasticsearchClient)
+                    .maxOperations(maxOperations)
+                    .maxSize(maxSizeBytes)
+                    .maxConcurrentRequests(maxConcurrentRequests)
+                    .flushInterval(flushIntervalMs, TimeUnit.MILLISECONDS)
+                    .listener(new RetryingListener()));
+        }
+
+        /**
+         * Queues a document for indexing, blocking while the maximum number
+         * of bulk requests is in flight.
+         */
+        public void add(OrderES document) {
+            add(document, null);
+        }
+
+        /**
+         * Queues a document and additionally tracks it in the given progress.
+         */
+        public void add(OrderES document, Progress progress) {
+            total.submitted();
+            if (progress != null) {
+                progress.submitted();
+            }
+            ingester.add(operation(document), new Pending(document, progress, 0));
+        }
+
+        public Progress getTotal() {
+            return total;
+        }
+
+        /**
+         * Waits until every document tracked by the progress has been
+         * acknowledged or has failed permanently.
+         */
+        public void await(Progress progress) throws InterruptedException {
+            while (progress.getOutstanding() > 0) {
+                ingester.flush();
+                progress.awaitCompletion(flushIntervalMs);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                await(total);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Interrupted while waiting for {} outstanding bulk operations", total.getOutstanding());
+            } finally {
+                ingester.close();
+                retryScheduler.shutdownNow();
+            }
+        }
+
+        private void retry(Pending pending, String reason) {
+            if (pending.attempt() >= maxRetries) {
+                logger.error("Giving up indexing order {} after {} retries: {}", pending.document().getId(),
+                        pending.attempt(), reason);
+                complete(pending, false);
+                return;
+            }
+            long delay = retryBackoffMs << pending.attempt();
+            // Re-adding from the listener thread could block on the ingester's own in-flight limit
+            retryScheduler.schedule(() -> ingester.add(operation(pending.document()),
+                    new Pending(pending.document(), pending.progress(), pending.attempt() + 1)),
+                    delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void complete(Pending pending, boolean success) {
+            total.completed(success);
+            if (pending.progress() != null) {
+                if (!success) {
+                    // Recorded before the count so awaiting callers see the ID
+                    pending.progress().failedIds.add(pending.document().getId());
+                }
+                pending.progress().completed(success);
+            }
+        }
+
+        private class RetryingListener implements BulkListener<Pending> {
+            @Override
+            public void beforeBulk(long executionId, BulkRequest request, List<Pending> contexts) {
+            }
+
+            @Override
+            public void afterBulk(long executionId, BulkRequest request, List<Pending> contexts,
+                    BulkResponse response) {
+                List<BulkResponseItem> items = response.items();
+                for (int i = 0; i < contexts.size(); i++) {
+                    Pending pending = contexts.get(i);
+                    BulkResponseItem item = items.get(i);
+                    if (item.error() == null) {
+                        complete(pending, true);
+                    } else if (item.status() == 429 || item.status() >= 500) {
+                        retry(pending, item.error().reason());
+                    } else {
+                        logger.error("Failed to index order {}: {}", pending.document().getId(),
+                                item.error().reason());
+                        complete(pending, false);
+                    }
+                }
+            }
+
+            @Override
+            public void afterBulk(long executionId, BulkRequest request, List<Pending> contexts,
+                    Throwable failure) {
+                logger.warn("Bulk request {} with {} operations failed: {}", executionId, contexts.size(),
+                        failure.getMessage());
+                contexts.forEach(pending -> retry(pending, failure.getMessage()));
+            }
+        }
+    }
+
+    private static BulkOperation operation(OrderES document) {
+        return BulkOperation.of(op -> op.index(idx -> idx
+                .index(ORDERS_INDEX)
+                .id(document.getId())
+                .document(document)));
+    }
+}
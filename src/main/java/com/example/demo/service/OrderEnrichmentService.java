@@ -0,0 +1,179 @@
+package com.example.demo.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.elasticsearch.core.UpdateByQueryResponse;
+import co.elastic.clients.json.JsonData;
+import com.example.demo.event.ProductConfigBoundaryEvent;
+import com.example.demo.event.ProductConfigChangedEvent;
+import com.example.demo.model.Order;
+import com.example.demo.model.OrderES;
+import com.example.demo.model.ProductConfig;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stamps indexed orders with their product's effective configuration
+ * (enabled, startDate, endDate) so Elasticsearch can filter active products
+ * on the orders index alone. When a product's configurations change, or a
+ * window boundary passes for a product with several configurations, its
+ * orders are re-stamped with an update-by-query on a background thread.
+ * Configuration changes are only seen by the instance that made the write;
+ * boundaries pass on every instance, so a Redis lock per product and
+ * boundary lets a single instance re-stamp for each.
+ */
+@Service
+public class OrderEnrichmentService {
+    private static final Logger logger = LoggerFactory.getLogger(OrderEnrichmentService.class);
+
+    private static final String ORDERS_INDEX = "orders";
+    private static final DateTimeFormatter ES_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+    private static final String ENRICH_SCRIPT = "ctx._source.productEnabled = params.enabled; "
+            + "ctx._source.productStartDate = params.startDate; "
+            + "ctx._source.productEndDate = params.endDate;";
+    private static final String BOUNDARY_LOCK_PREFIX = "order-reenrichment:";
+    // Held until it expires, so instances that reach the boundary later skip it
+    private static final Duration BOUNDARY_LOCK_TTL = Duration.ofMinutes(10);
+
+    private final ActiveProductViewService activeProductView;
+    private final ElasticsearchClient elasticsearchClient;
+    private final RedisLockService lockService;
+
+    // Products awaiting re-enrichment; a product queued twice is only updated once
+    private final Set<String> pendingProducts = ConcurrentHashMap.newKeySet();
+    private final ExecutorService reenricher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "order-reenrichment");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public OrderEnrichmentService(ActiveProductViewService activeProductView,
+            ElasticsearchClient elasticsearchClient,
+            RedisLockService lockService) {
+        this.activeProductView = activeProductView;
+        this.elasticsearchClient = elasticsearchClient;
+        this.lockService = lockService;
+    }
+
+    /**
+     * Converts an order for indexing, stamped with its product's effective
+     * configuration.
+     */
+    public OrderES toOrderES(Order order) {
+        ProductConfig config = order.getProductId() != null
+                ? effectiveConfig(activeProductView.getConfigsForProduct(order.getProductId()), LocalDateTime.now())
+                : null;
+        return OrderES.fromOrder(order, config);
+    }
+
+    /**
+     * The configuration whose window an order is stamped with: an active one
+     * if any (latest end first), else the next to start, else the one that
+     * ended last.
+     */
+    public static ProductConfig effectiveConfig(Collection<ProductConfig> configs, LocalDateTime now) {
+        Comparator<LocalDateTime> nullsFirst = Comparator.nullsFirst(Comparator.naturalOrder());
+        return configs.stream()
+                .filter(config -> ActiveProductViewService.isActive(config, now))
+                .max(Comparator.comparing(ProductConfig::getEndDate, nullsFirst))
+                .or(() -> configs.stream()
+                        .filter(config -> config.isEnabled() && config.getStartDate() != null
+                                && config.getStartDate().isAfter(now))
+                        .min(Comparator.comparing(ProductConfig::getStartDate)))
+                .or(() -> configs.stream()
+                        .max(Comparator.comparing(ProductConfig::getEndDate, nullsFirst)))
+                .orElse(null);
+    }
+
+    @EventListener
+    public void onProductConfigChanged(ProductConfigChangedEvent event) {
+        scheduleReenrichment(event.getProductId());
+    }
+
+    /**
+     * A single configuration's window is already on its orders; only products
+     * with several configurations can switch to a different effective one.
+     * The first instance to lock the product's boundary re-stamps its orders.
+     */
+    @EventListener
+    public void onBoundary(ProductConfigBoundaryEvent event) {
+        String productId = event.getConfig().getProductId();
+        if (productId == null || activeProductView.getConfigsForProduct(productId).size() <= 1) {
+            return;
+        }
+        String lockName = BOUNDARY_LOCK_PREFIX + productId + ":" + event.getBoundary().format(ES_DATE_FORMAT);
+        if (lockService.tryLock(lockName, BOUNDARY_LOCK_TTL) == null) {
+            logger.debug("Orders of product {} are re-enriched for boundary {} by another instance", productId,
+                    event.getBoundary());
+            return;
+        }
+        scheduleReenrichment(productId);
+    }
+
+    private void scheduleReenrichment(String productId) {
+        if (pendingProducts.add(productId)) {
+            reenricher.execute(() -> {
+                pendingProducts.remove(productId);
+                reenrich(productId);
+            });
+        }
+    }
+
+    /**
+     * Re-stamps every indexed order of the product. Runs to completion before
+     * the next product is processed, so updates for one product never race.
+     */
+    private void reenrich(String productId) {
+        try {
+            ProductConfig config = effectiveConfig(activeProductView.getConfigsForProduct(productId),
+                    LocalDateTime.now());
+            Map<String, JsonData> params = new HashMap<>();
+            if (config != null) {
+                params.put("enabled", JsonData.of(config.isEnabled()));
+                if (config.getStartDate() != null) {
+                    params.put("startDate", JsonData.of(config.getStartDate().format(ES_DATE_FORMAT)));
+                }
+                if (config.getEndDate() != null) {
+                    params.put("endDate", JsonData.of(config.getEndDate().format(ES_DATE_FORMAT)));
+                }
+            }
+
+            UpdateByQueryResponse response = elasticsearchClient.updateByQuery(u -> u
+                    .index(ORDERS_INDEX)
+                    .conflicts(Conflicts.Proceed)
+                    .query(q -> q
+                            .term(t -> t
+                                    .field("productId.keyword")
+                                    .value(productId)))
+                    .script(s -> s
+                            .inline(i -> i
+                                    .source(ENRICH_SCRIPT)
+                                    .params(params))));
+            logger.debug("Re-enriched {} orders of product {}", response.updated(), productId);
+        } catch (Exception e) {
+            logger.error("Failed to re-enrich orders of product {}: {}", productId, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reenricher.shutdownNow();
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.demo.service;
 
+import com.example.demo.config.MongoTransactionRunner;
 import com.example.demo.model.Order;
 import com.example.demo.repository.OrderRepository;
 import com.example.demo.repository.OrderRepositoryCustom;
@@ -16,20 +17,33 @@ public class OrderService {
     private final OrderRepository orderRepository;
     private final OrderRepositoryCustom orderRepositoryCustom;
     private final MongoTemplate mongoTemplate;
+    private final ProductOrderSummaryService summaryService;
+    private final MongoTransactionRunner transactionRunner;
 
     @Autowired
     public OrderService(OrderRepository orderRepository, OrderRepositoryCustom orderRepositoryCustom,
-            MongoTemplate mongoTemplate) {
+            MongoTemplate mongoTemplate, ProductOrderSummaryService summaryService,
+            MongoTransactionRunner transactionRunner) {
         this.orderRepository = orderRepository;
         this.orderRepositoryCustom = orderRepositoryCustom;
         this.mongoTemplate = mongoTemplate;
+        this.summaryService = summaryService;
+        this.transactionRunner = transactionRunner;
     }
 
+    /**
+     * Saves a new order and adds it to its product's order summary, in the
+     * same transaction when transactions are enabled.
+     */
     public Order createOrder(Order order) {
         order.setCreatedAt(LocalDateTime.now());
         order.setUpdatedAt(LocalDateTime.now());
         order.setStatus("PENDING");
-        return orderRepository.save(order);
+        return transactionRunner.execute(() -> {
+            Order savedOrder = orderRepository.save(order);
+            summaryService.recordOrder(savedOrder);
+            return savedOrder;
+        });
     }
 
     public List<Order> findOrdersByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
@@ -0,0 +1,349 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Order;
+import com.example.demo.model.OrderSyncCheckpoint;
+import com.example.demo.repository.MongoStreamReader;
+import com.example.demo.repository.OrderSyncCheckpointRepository;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Exports orders to Elasticsearch with several workers in parallel. The
+ * collection is split into _id ranges of equal ObjectId-timestamp width;
+ * each worker streams its range in _id order through its own cursor into a
+ * shared {@link OrderBulkIndexer} session. Every worker periodically waits
+ * for its documents to be acknowledged and then records a checkpoint, so an
+ * interrupted export resumes after the last acknowledged order of each
+ * partition instead of starting over. Orders Elasticsearch rejected are kept
+ * on the checkpoint and retried when the export is resumed.
+ */
+@Service
+public class PartitionedOrderSyncService {
+    private static final Logger logger = LoggerFactory.getLogger(PartitionedOrderSyncService.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final MongoStreamReader mongoStreamReader;
+    private final OrderBulkIndexer bulkIndexer;
+    private final OrderSyncCheckpointRepository checkpointRepository;
+    private final OrderEnrichmentService orderEnrichmentService;
+
+    @Value("${elasticsearch.partitioned-sync.partitions:8}")
+    private int partitionCount;
+
+    @Value("${elasticsearch.partitioned-sync.checkpoint-interval:10000}")
+    private int checkpointInterval;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean stopRequested;
+    private volatile List<PartitionRun> partitions = List.of();
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile String lastError;
+
+    @Autowired
+    public PartitionedOrderSyncService(MongoTemplate mongoTemplate, MongoStreamReader mongoStreamReader,
+            OrderBulkIndexer bulkIndexer, OrderSyncCheckpointRepository checkpointRepository,
+            OrderEnrichmentService orderEnrichmentService) {
+        this.mongoTemplate = mongoTemplate;
+        this.mongoStreamReader = mongoStreamReader;
+        this.bulkIndexer = bulkIndexer;
+        this.checkpointRepository = checkpointRepository;
+        this.orderEnrichmentService = orderEnrichmentService;
+    }
+
+    /**
+     * Live state of one partition: its checkpoint plus the acknowledgement
+     * counters of the current run.
+     */
+    private static class PartitionRun {
+        private final OrderSyncCheckpoint checkpoint;
+        private final OrderBulkIndexer.Progress progress = new OrderBulkIndexer.Progress();
+        private final long indexedBefore;
+        private final long failedBefore;
+
+        private PartitionRun(OrderSyncCheckpoint checkpoint) {
+            this.checkpoint = checkpoint;
+            this.indexedBefore = checkpoint.getIndexed();
+            this.failedBefore = checkpoint.getFailed();
+        }
+    }
+
+    /**
+     * Starts an export in the background. With {@code resume} the unfinished
+     * partitions of the previous export are continued; otherwise, or if there
+     * is nothing to resume, the collection is partitioned afresh. Returns
+     * false if an export is already running.
+     */
+    public boolean start(boolean resume) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        stopRequested = false;
+        lastError = null;
+        startedAt = System.currentTimeMillis();
+        finishedAt = 0;
+        Thread coordinator = new Thread(() -> run(resume), "order-sync-coordinator");
+        coordinator.setDaemon(true);
+        coordinator.start();
+        return true;
+    }
+
+    /**
+     * Asks the running export to stop after the current checkpoint; it can be
+     * resumed later.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    public Map<String, Object> getStatus() {
+        List<PartitionRun> runs = partitions;
+        long indexedThisRun = 0;
+        long indexed = 0;
+        long failed = 0;
+        List<Map<String, Object>> partitionStatus = new ArrayList<>(runs.size());
+        for (PartitionRun run : runs) {
+            indexedThisRun += run.progress.getIndexed();
+            long partitionIndexed = run.indexedBefore + run.progress.getIndexed();
+            long partitionFailed = run.failedBefore + run.progress.getFailed();
+            indexed += partitionIndexed;
+            failed += partitionFailed;
+
+            Map<String, Object> partition = new LinkedHashMap<>();
+            partition.put("partition", run.checkpoint.getPartition());
+            partition.put("range_start", run.checkpoint.getRangeStart());
+            partition.put("range_end", run.checkpoint.getRangeEnd());
+            partition.put("checkpoint", run.checkpoint.getLastId());
+            partition.put("indexed", partitionIndexed);
+            partition.put("failed", partitionFailed);
+            partition.put("completed", run.checkpoint.isCompleted());
+            partitionStatus.add(partition);
+        }
+
+        long elapsedMs = startedAt == 0 ? 0 : (finishedAt != 0 ? finishedAt : System.currentTimeMillis()) - startedAt;
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("elapsed_ms", elapsedMs);
+        status.put("indexed", indexed);
+        status.put("failed", failed);
+        status.put("docs_per_second", elapsedMs > 0 ? indexedThisRun * 1000 / elapsedMs : 0);
+        status.put("estimated_total", mongoTemplate.estimatedCount(Order.class));
+        status.put("last_error", lastError);
+        status.put("partitions", partitionStatus);
+        return status;
+    }
+
+    private void run(boolean resume) {
+        ExecutorService workers = null;
+        try {
+            List<OrderSyncCheckpoint> checkpoints = resume ? resumableCheckpoints() : List.of();
+            if (checkpoints.isEmpty()) {
+                checkpoints = planPartitions();
+            }
+            List<PartitionRun> runs = checkpoints.stream().map(PartitionRun::new).toList();
+            partitions = runs;
+            List<PartitionRun> pending = runs.stream().filter(run -> !run.checkpoint.isCompleted()).toList();
+            if (pending.isEmpty()) {
+                logger.info("No orders to export to Elasticsearch");
+                return;
+            }
+            logger.info("Starting partitioned order export of {} of {} partitions", pending.size(), runs.size());
+
+            AtomicInteger workerNumber = new AtomicInteger();
+            workers = Executors.newFixedThreadPool(pending.size(), runnable -> {
+                Thread thread = new Thread(runnable, "order-sync-" + workerNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            try (OrderBulkIndexer.Session session = bulkIndexer.openSession()) {
+                List<Future<?>> futures = new ArrayList<>(pending.size());
+                for (PartitionRun run : pending) {
+                    futures.add(workers.submit(() -> {
+                        exportPartition(session, run);
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+            logger.info("Partitioned order export {} in {} ms", stopRequested ? "stopped" : "completed",
+                    System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            logger.error("Partitioned order export failed: {}", e.getMessage(), e);
+        } finally {
+            if (workers != null) {
+                workers.shutdownNow();
+            }
+            finishedAt = System.currentTimeMillis();
+            running.set(false);
+        }
+    }
+
+    /**
+     * Retries the partition's previously failed orders, then streams the rest
+     * of the partition in _id order, checkpointing every
+     * {@code checkpointInterval} orders once they are acknowledged.
+     */
+    private void exportPartition(OrderBulkIndexer.Session session, PartitionRun run) throws InterruptedException {
+        OrderSyncCheckpoint checkpoint = run.checkpoint;
+        String lastSubmitted = checkpoint.getLastId();
+        int sinceCheckpoint = 0;
+        boolean stopped = false;
+
+        List<String> retryIds = new ArrayList<>(checkpoint.getFailedIds());
+        if (!retryIds.isEmpty()) {
+            checkpoint.getFailedIds().clear();
+            logger.info("Partition {} retrying {} previously failed orders", checkpoint.getPartition(),
+                    retryIds.size());
+            try (Stream<Order> orders = mongoStreamReader.stream(retryQuery(retryIds), Order.class)) {
+                orders.forEach(order -> session.add(orderEnrichmentService.toOrderES(order), run.progress));
+            }
+        }
+
+        try (Stream<Order> orders = mongoStreamReader.stream(partitionQuery(checkpoint), Order.class)) {
+            for (Order order : (Iterable<Order>) orders::iterator) {
+                if (stopRequested) {
+                    stopped = true;
+                    break;
+                }
+                session.add(orderEnrichmentService.toOrderES(order), run.progress);
+                lastSubmitted = order.getId();
+                if (++sinceCheckpoint >= checkpointInterval) {
+                    session.await(run.progress);
+                    saveCheckpoint(run, lastSubmitted, false);
+                    sinceCheckpoint = 0;
+                }
+            }
+        }
+        session.await(run.progress);
+        saveCheckpoint(run, lastSubmitted, !stopped);
+        if (!checkpoint.getFailedIds().isEmpty()) {
+            logger.warn("Partition {} has {} orders that failed to index; resume the export to retry them",
+                    checkpoint.getPartition(), checkpoint.getFailedIds().size());
+        }
+        logger.info("Partition {} {} after {} orders", checkpoint.getPartition(), stopped ? "stopped" : "completed",
+                run.indexedBefore + run.progress.getIndexed());
+    }
+
+    private Query partitionQuery(OrderSyncCheckpoint checkpoint) {
+        Criteria idRange = Criteria.where("_id");
+        boolean bounded = false;
+        if (checkpoint.getLastId() != null) {
+            idRange.gt(new ObjectId(checkpoint.getLastId()));
+            bounded = true;
+        } else if (checkpoint.getRangeStart() != null) {
+            idRange.gte(new ObjectId(checkpoint.getRangeStart()));
+            bounded = true;
+        }
+        if (checkpoint.getRangeEnd() != null) {
+            idRange.lt(new ObjectId(checkpoint.getRangeEnd()));
+            bounded = true;
+        }
+        Query query = bounded ? new Query(idRange) : new Query();
+        return query.with(Sort.by(Sort.Direction.ASC, "_id"));
+    }
+
+    private Query retryQuery(List<String> orderIds) {
+        List<Object> ids = orderIds.stream()
+                .map(id -> ObjectId.isValid(id) ? (Object) new ObjectId(id) : id)
+                .toList();
+        return new Query(Criteria.where("_id").in(ids));
+    }
+
+    /**
+     * Saves the checkpoint after an await, with the orders that failed since
+     * the previous one. A partition with failed orders is not completed, so
+     * a resumed export picks them up.
+     */
+    private void saveCheckpoint(PartitionRun run, String lastId, boolean completed) {
+        OrderSyncCheckpoint checkpoint = run.checkpoint;
+        checkpoint.setLastId(lastId);
+        checkpoint.getFailedIds().addAll(run.progress.drainFailedIds());
+        checkpoint.setIndexed(run.indexedBefore + run.progress.getIndexed());
+        checkpoint.setFailed(run.failedBefore + run.progress.getFailed());
+        checkpoint.setCompleted(completed && checkpoint.getFailedIds().isEmpty());
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpointRepository.save(checkpoint);
+    }
+
+    /**
+     * Checkpoints of the previous export if it did not finish, else none.
+     */
+    private List<OrderSyncCheckpoint> resumableCheckpoints() {
+        List<OrderSyncCheckpoint> checkpoints = checkpointRepository.findAllByOrderByPartitionAsc();
+        if (checkpoints.stream().allMatch(OrderSyncCheckpoint::isCompleted)) {
+            return List.of();
+        }
+        return checkpoints;
+    }
+
+    /**
+     * Splits the span between the oldest and newest order _id into ranges of
+     * equal ObjectId timestamp width. The outer ranges are open, so orders
+     * inserted during the export are still picked up.
+     */
+    private List<OrderSyncCheckpoint> planPartitions() {
+        checkpointRepository.deleteAll();
+        Integer first = boundaryTimestamp(Sort.Direction.ASC);
+        Integer last = boundaryTimestamp(Sort.Direction.DESC);
+        if (first == null || last == null) {
+            return List.of();
+        }
+
+        long span = Math.max(1, (long) last - first + 1);
+        int count = (int) Math.min(Math.max(1, partitionCount), span);
+        List<OrderSyncCheckpoint> checkpoints = new ArrayList<>(count);
+        String rangeStart = null;
+        for (int i = 0; i < count; i++) {
+            String rangeEnd = i == count - 1 ? null : objectIdAt(first + span * (i + 1) / count);
+            OrderSyncCheckpoint checkpoint = new OrderSyncCheckpoint();
+            checkpoint.setId("partition-" + i);
+            checkpoint.setPartition(i);
+            checkpoint.setRangeStart(rangeStart);
+            checkpoint.setRangeEnd(rangeEnd);
+            checkpoint.setUpdatedAt(LocalDateTime.now());
+            checkpoints.add(checkpoint);
+            rangeStart = rangeEnd;
+        }
+        return checkpointRepository.saveAll(checkpoints);
+    }
+
+    private Integer boundaryTimestamp(Sort.Direction direction) {
+        Query query = new Query().with(Sort.by(direction, "_id")).limit(1);
+        query.fields().include("_id");
+        Order order = mongoTemplate.findOne(query, Order.class);
+        if (order == null || !ObjectId.isValid(order.getId())) {
+            return null;
+        }
+        return new ObjectId(order.getId()).getTimestamp();
+    }
+
+    /**
+     * Smallest ObjectId with the given creation time in epoch seconds.
+     */
+    private static String objectIdAt(long epochSeconds) {
+        return String.format("%08x%016x", epochSeconds, 0L);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.demo.service;
+
+import com.example.demo.event.ProductConfigBoundaryEvent;
+import com.example.demo.model.ProductConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Boundary-event engine for product configuration activation windows.
+ * Keeps a priority queue keyed on the next activation or expiry instant of
+ * every configuration and publishes a {@link ProductConfigBoundaryEvent} on a
+ * dedicated thread as soon as that instant is reached, so caches and views
+ * can be invalidated exactly at the boundary.
+ */
+@Service
+public class ProductConfigBoundaryScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(ProductConfigBoundaryScheduler.class);
+
+    // Upper bound on a single wait so wall-clock adjustments are picked up
+    private static final Duration MAX_WAIT = Duration.ofSeconds(30);
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition queueChanged = lock.newCondition();
+    private final PriorityQueue<Boundary> queue = new PriorityQueue<>(Comparator.comparing(Boundary::at));
+    private final Map<String, Boundary> pendingByConfigId = new HashMap<>();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    @Autowired
+    public ProductConfigBoundaryScheduler(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        worker = new Thread(this::runLoop, "product-config-boundary-scheduler");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    /**
+     * Schedules the next boundary of the given configuration after
+     * {@code now}, replacing any boundary already pending for it. Callers pass
+     * the instant they evaluated the configuration at, so a boundary between
+     * that evaluation and this call is still scheduled.
+     */
+    public void schedule(ProductConfig config, LocalDateTime now) {
+        if (config == null || config.getId() == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            enqueue(config, now);
+            queueChanged.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops any pending boundary for the given configuration.
+     */
+    public void cancel(String configId) {
+        lock.lock();
+        try {
+            // Stale queue entries are skipped lazily when they reach the head
+            pendingByConfigId.remove(configId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces all pending boundaries with those of the given configurations
+     * after {@code now}, the instant the caller evaluated them at.
+     */
+    public void scheduleAll(Iterable<ProductConfig> configs, LocalDateTime now) {
+        lock.lock();
+        try {
+            queue.clear();
+            pendingByConfigId.clear();
+            for (ProductConfig config : configs) {
+                if (config.getId() != null) {
+                    enqueue(config, now);
+                }
+            }
+            queueChanged.signal();
+            logger.info("Scheduled {} product configuration boundaries", pendingByConfigId.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of configurations with a pending boundary.
+     */
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pendingByConfigId.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(ProductConfig config, LocalDateTime now) {
+        pendingByConfigId.remove(config.getId());
+        Boundary boundary = nextBoundary(config, now);
+        if (boundary != null) {
+            pendingByConfigId.put(config.getId(), boundary);
+            queue.add(boundary);
+        }
+    }
+
+    private void runLoop() {
+        while (running) {
+            Boundary due;
+            lock.lock();
+            try {
+                due = awaitDueBoundary();
+                if (due == null) {
+                    continue;
+                }
+                // Schedule the closing boundary before publishing so a window that
+                // opens and closes in quick succession is not missed
+                pendingByConfigId.remove(due.config().getId());
+                if (due.type() == ProductConfigBoundaryEvent.Type.ACTIVATED) {
+                    enqueue(due.config(), due.at());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                logger.debug("Product config {} ({}) {} at {}", due.config().getId(),
+                        due.config().getProductId(), due.type(), due.at());
+                eventPublisher.publishEvent(
+                        new ProductConfigBoundaryEvent(this, due.config(), due.type(), due.at()));
+            } catch (Exception e) {
+                logger.error("Error publishing boundary event for config {}: {}", due.config().getId(),
+                        e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Waits until the head of the queue is due. Returns null when the wait was
+     * cut short so the caller can re-check its running flag. Must be called with
+     * the lock held.
+     */
+    private Boundary awaitDueBoundary() throws InterruptedException {
+        Boundary head = queue.peek();
+        if (head == null) {
+            queueChanged.awaitNanos(MAX_WAIT.toNanos());
+            return null;
+        }
+        if (pendingByConfigId.get(head.config().getId()) != head) {
+            queue.poll();
+            return null;
+        }
+        Duration delay = Duration.between(LocalDateTime.now(), head.at());
+        if (!delay.isNegative() && !delay.isZero()) {
+            // Compare as Durations first: far-future end dates overflow toNanos()
+            queueChanged.awaitNanos(delay.compareTo(MAX_WAIT) > 0 ? MAX_WAIT.toNanos() : delay.toNanos());
+            return null;
+        }
+        return queue.poll();
+    }
+
+    private static Boundary nextBoundary(ProductConfig config, LocalDateTime now) {
+        if (!config.isEnabled() || config.getProductId() == null
+                || config.getStartDate() == null || config.getEndDate() == null) {
+            return null;
+        }
+        if (config.getStartDate().isAfter(now)) {
+            return new Boundary(config, ProductConfigBoundaryEvent.Type.ACTIVATED, config.getStartDate());
+        }
+        if (config.getEndDate().isAfter(now)) {
+            return new Boundary(config, ProductConfigBoundaryEvent.Type.DEACTIVATED, config.getEndDate());
+        }
+        return null;
+    }
+
+    private record Boundary(ProductConfig config, ProductConfigBoundaryEvent.Type type, LocalDateTime at) {
+    }
+}
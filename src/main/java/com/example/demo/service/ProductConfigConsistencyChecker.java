@@ -0,0 +1,113 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.ConsistencyReport;
+import com.example.demo.model.ProductConfig;
+import com.example.demo.repository.MongoStreamReader;
+import com.example.demo.repository.ProductConfigRedisDigest;
+import com.example.demo.util.ProductConfigFingerprint;
+import com.example.demo.util.ProductConfigFingerprint.BucketDigest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Bucketed hash-tree comparison of product configurations in MongoDB and
+ * Redis. Both sides are reduced to one digest per bucket of config IDs;
+ * only buckets whose digests differ are drilled into to list the divergent
+ * IDs. Redis hashes are read with SSCAN and one pipelined HMGET per chunk,
+ * so the check needs a few round trips instead of one lookup per
+ * configuration.
+ */
+@Service
+public class ProductConfigConsistencyChecker {
+    private static final Logger logger = LoggerFactory.getLogger(ProductConfigConsistencyChecker.class);
+
+    private final MongoStreamReader mongoStreamReader;
+    private final ProductConfigRedisDigest redisDigest;
+
+    @Value("${consistency-check.bucket-count:1024}")
+    private int bucketCount;
+
+    @Value("${consistency-check.scan-count:5000}")
+    private int scanCount;
+
+    @Autowired
+    public ProductConfigConsistencyChecker(MongoStreamReader mongoStreamReader, ProductConfigRedisDigest redisDigest) {
+        this.mongoStreamReader = mongoStreamReader;
+        this.redisDigest = redisDigest;
+    }
+
+    public ConsistencyReport check() {
+        // The Redis script buckets the unsigned hash, which only matches floorMod for powers of two
+        if (Integer.bitCount(bucketCount) != 1) {
+            throw new IllegalStateException("consistency-check.bucket-count must be a power of two");
+        }
+        long startTime = System.currentTimeMillis();
+
+        Map<Integer, BucketDigest> mongoDigests = new HashMap<>();
+        forEachMongoConfig(config -> mongoDigests
+                .computeIfAbsent(ProductConfigFingerprint.bucketOf(config.getId(), bucketCount),
+                        bucket -> new BucketDigest())
+                .add(config.getId(), ProductConfigFingerprint.of(config)));
+        Map<Integer, BucketDigest> redisDigests = redisDigest.digestBuckets(bucketCount, scanCount);
+
+        Set<Integer> divergentBuckets = new HashSet<>(mongoDigests.keySet());
+        divergentBuckets.addAll(redisDigests.keySet());
+        divergentBuckets.removeIf(bucket -> Objects.equals(mongoDigests.get(bucket), redisDigests.get(bucket)));
+
+        ConsistencyReport report = new ConsistencyReport();
+        report.setBucketCount(bucketCount);
+        report.setDivergentBuckets(divergentBuckets.size());
+        report.setMongoCount(mongoDigests.values().stream().mapToLong(BucketDigest::getCount).sum());
+        report.setRedisCount(redisDigests.values().stream().mapToLong(BucketDigest::getCount).sum());
+
+        if (!divergentBuckets.isEmpty()) {
+            Map<String, String> mongoFingerprints = new HashMap<>();
+            forEachMongoConfig(config -> {
+                if (divergentBuckets.contains(ProductConfigFingerprint.bucketOf(config.getId(), bucketCount))) {
+                    mongoFingerprints.put(config.getId(), ProductConfigFingerprint.of(config));
+                }
+            });
+            Map<String, String> redisFingerprints =
+                    redisDigest.fingerprintsInBuckets(divergentBuckets, bucketCount, scanCount);
+
+            mongoFingerprints.forEach((id, fingerprint) -> {
+                String redisFingerprint = redisFingerprints.get(id);
+                if (redisFingerprint == null) {
+                    report.getMissingInRedis().add(id);
+                } else if (!redisFingerprint.equals(fingerprint)) {
+                    report.getMismatched().add(id);
+                }
+            });
+            redisFingerprints.keySet().stream()
+                    .filter(id -> !mongoFingerprints.containsKey(id))
+                    .forEach(report.getMissingInMongo()::add);
+        }
+
+        report.setConsistent(report.getMissingInRedis().isEmpty() && report.getMissingInMongo().isEmpty()
+                && report.getMismatched().isEmpty());
+        logger.info("Consistency check compared {} buckets in {} ms: {} divergent, {} missing in Redis, "
+                + "{} missing in MongoDB, {} mismatched", bucketCount, System.currentTimeMillis() - startTime,
+                divergentBuckets.size(), report.getMissingInRedis().size(), report.getMissingInMongo().size(),
+                report.getMismatched().size());
+        return report;
+    }
+
+    private void forEachMongoConfig(Consumer<ProductConfig> consumer) {
+        Query query = MongoStreamReader.projection("productId", "enabled", "startDate", "endDate");
+        try (Stream<ProductConfig> configs = mongoStreamReader.stream(query, ProductConfig.class)) {
+            configs.filter(config -> config.getId() != null).forEach(consumer);
+        }
+    }
+}
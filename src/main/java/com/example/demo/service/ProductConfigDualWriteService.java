@@ -1,165 +1,318 @@
 package com.example.demo.service;
 
+import com.example.demo.config.MongoTransactionRunner;
+import com.example.demo.dto.ConsistencyReport;
 import com.example.demo.model.ProductConfig;
+import com.example.demo.model.ProductConfigOutboxEvent;
 import com.example.demo.model.ProductConfigRedis;
+import com.example.demo.repository.MongoStreamReader;
+import com.example.demo.repository.ProductConfigFingerprintStore;
+import com.example.demo.repository.ProductConfigOutboxRepository;
 import com.example.demo.repository.ProductConfigRepository;
+import com.example.demo.repository.ProductConfigRedisIndex;
 import com.example.demo.repository.ProductConfigRedisRepository;
+import com.example.demo.util.ProductConfigFingerprint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.stream.Stream;
 
 /**
  * Service that maintains consistency between MongoDB and Redis for product
  * configurations.
  * MongoDB is considered the source of truth, with Redis serving as a
- * high-performance access layer.
+ * high-performance access layer. Writes record an outbox event, in the same
+ * MongoDB transaction when transactions are enabled;
+ * {@link ProductConfigOutboxRelay} propagates it to Redis and Elasticsearch.
+ * With the default {@code mongodb.transactions.enabled=false} the two saves
+ * are separate writes: a crash between the configuration save and the outbox
+ * save leaves Redis (and Elasticsearch) stale for that configuration until
+ * the next full sync ({@code redis.sync.interval}, hourly by default).
  */
 @Service
 public class ProductConfigDualWriteService {
     private static final Logger logger = LoggerFactory.getLogger(ProductConfigDualWriteService.class);
 
+    private static final long LOCK_POLL_INTERVAL_MS = 100;
+
     private final ProductConfigRepository mongoRepository;
+    private final ProductConfigOutboxRepository outboxRepository;
     private final ProductConfigRedisRepository redisRepository;
+    private final ProductConfigRedisIndex redisIndex;
+    private final ProductConfigFingerprintStore fingerprintStore;
+    private final ActiveProductViewService activeProductView;
+    private final ProductConfigConsistencyChecker consistencyChecker;
+    private final MongoStreamReader mongoStreamReader;
+    private final MongoTransactionRunner transactionRunner;
+    private final RedisLockService lockService;
+    private final Duration relayLockTtl;
+    private final long relayLockWaitMs;
 
     @Autowired
     public ProductConfigDualWriteService(
             ProductConfigRepository mongoRepository,
-            ProductConfigRedisRepository redisRepository) {
+            ProductConfigOutboxRepository outboxRepository,
+            ProductConfigRedisRepository redisRepository,
+            ProductConfigRedisIndex redisIndex,
+            ProductConfigFingerprintStore fingerprintStore,
+            ActiveProductViewService activeProductView,
+            ProductConfigConsistencyChecker consistencyChecker,
+            MongoStreamReader mongoStreamReader,
+            MongoTransactionRunner transactionRunner,
+            RedisLockService lockService,
+            @Value("${product.outbox.relay.lock-ttl:30000}") long relayLockTtlMs,
+            @Value("${redis.sync.lock-wait:30000}") long relayLockWaitMs) {
         this.mongoRepository = mongoRepository;
+        this.outboxRepository = outboxRepository;
         this.redisRepository = redisRepository;
+        this.redisIndex = redisIndex;
+        this.fingerprintStore = fingerprintStore;
+        this.activeProductView = activeProductView;
+        this.consistencyChecker = consistencyChecker;
+        this.mongoStreamReader = mongoStreamReader;
+        this.transactionRunner = transactionRunner;
+        this.lockService = lockService;
+        this.relayLockTtl = Duration.ofMillis(relayLockTtlMs);
+        this.relayLockWaitMs = relayLockWaitMs;
     }
 
     /**
-     * Creates a new product configuration in both MongoDB and Redis.
-     * MongoDB write is performed first, as it's the source of truth.
+     * Creates a new product configuration in MongoDB together with an outbox
+     * event that propagates it to Redis and Elasticsearch.
      */
-    @Transactional
     public ProductConfig createProductConfig(ProductConfig config) {
         logger.info("Creating new product configuration for product ID: {}", config.getProductId());
 
-        // Write to MongoDB first (source of truth)
-        ProductConfig savedConfig = mongoRepository.save(config);
-
-        try {
-            // Then write to Redis
-            ProductConfigRedis redisConfig = ProductConfigRedis.fromProductConfig(savedConfig);
-            redisRepository.save(redisConfig);
-            logger.debug("Successfully wrote product configuration to both MongoDB and Redis");
-        } catch (Exception e) {
-            logger.error("Failed to write to Redis, but MongoDB write succeeded: {}", e.getMessage());
-            // MongoDB write succeeded, which is what matters most
-        }
+        ProductConfig savedConfig = transactionRunner.execute(() -> {
+            ProductConfig saved = mongoRepository.save(config);
+            outboxRepository.save(ProductConfigOutboxEvent.upsert(saved));
+            return saved;
+        });
+        activeProductView.apply(savedConfig);
 
         return savedConfig;
     }
 
     /**
-     * Updates an existing product configuration in both MongoDB and Redis.
-     * MongoDB update is performed first, as it's the source of truth.
+     * Updates an existing product configuration in MongoDB together with an
+     * outbox event that propagates it to Redis and Elasticsearch.
      */
-    @Transactional
     public ProductConfig updateProductConfig(String id, ProductConfig config) {
         logger.info("Updating product configuration with ID: {}", id);
 
         // Ensure the ID is set on the configuration
         config.setId(id);
 
-        // Update MongoDB first (source of truth)
-        ProductConfig updatedConfig = mongoRepository.save(config);
-
-        try {
-            // Then update Redis
-            ProductConfigRedis redisConfig = ProductConfigRedis.fromProductConfig(updatedConfig);
-            redisRepository.save(redisConfig);
-            logger.debug("Successfully updated product configuration in both MongoDB and Redis");
-        } catch (Exception e) {
-            logger.error("Failed to update Redis, but MongoDB update succeeded: {}", e.getMessage());
-            // MongoDB update succeeded, which is what matters most
-        }
+        ProductConfig updatedConfig = transactionRunner.execute(() -> {
+            ProductConfig saved = mongoRepository.save(config);
+            outboxRepository.save(ProductConfigOutboxEvent.upsert(saved));
+            return saved;
+        });
+        activeProductView.apply(updatedConfig);
 
         return updatedConfig;
     }
 
     /**
-     * Deletes a product configuration from both MongoDB and Redis.
-     * MongoDB deletion is performed first, as it's the source of truth.
+     * Deletes a product configuration from MongoDB together with an outbox
+     * event that removes it from Redis and Elasticsearch.
      */
-    @Transactional
     public void deleteProductConfig(String id) {
         logger.info("Deleting product configuration with ID: {}", id);
 
-        try {
-            // Delete from MongoDB first (source of truth)
+        transactionRunner.run(() -> {
             mongoRepository.deleteById(id);
-
-            // Then delete from Redis
-            redisRepository.deleteById(id);
-            logger.debug("Successfully deleted product configuration from both MongoDB and Redis");
-        } catch (Exception e) {
-            logger.error("Error during deletion process: {}", e.getMessage());
-            // Attempt to clean up Redis regardless of MongoDB outcome
-            try {
-                redisRepository.deleteById(id);
-            } catch (Exception redisError) {
-                logger.error("Failed to delete from Redis: {}", redisError.getMessage());
-            }
-        }
+            outboxRepository.save(ProductConfigOutboxEvent.delete(id));
+        });
+        activeProductView.remove(id);
     }
 
     /**
-     * Retrieves all product configurations from MongoDB and syncs them to Redis.
-     * Use this method to restore Redis data from MongoDB (source of truth).
+     * Brings Redis in line with MongoDB (source of truth) by diffing content
+     * fingerprints: only configurations whose fingerprint changed are written
+     * and only IDs missing from MongoDB are deleted. MongoDB is read through a
+     * cursor batch by batch while the time index is rebuilt in staging keys
+     * and swapped in atomically, so readers never see an empty or partially
+     * synced Redis. The same pass rebuilds the in-process active product
+     * view, so MongoDB is scanned once. The outbox relay lock is held (and
+     * extended per batch) for the whole sync, so the relay cannot write a
+     * newer configuration that the swap would then overwrite with the older
+     * snapshot. Returns the number of entries written or deleted.
      */
     public int syncFromMongoToRedis() {
-        logger.info("Starting full synchronization from MongoDB to Redis");
-        List<ProductConfig> mongoConfigs = mongoRepository.findAll();
-        int syncCount = 0;
+        String token = acquireRelayLock();
+        if (token == null) {
+            logger.warn("Skipping synchronization from MongoDB to Redis: outbox relay still running after {} ms",
+                    relayLockWaitMs);
+            return 0;
+        }
+        try {
+            return syncWithRelayLock(token);
+        } finally {
+            lockService.unlock(ProductConfigOutboxRelay.RELAY_LOCK, token);
+        }
+    }
+
+    private int syncWithRelayLock(String token) {
+        logger.info("Starting incremental synchronization from MongoDB to Redis");
+        long startTime = System.currentTimeMillis();
 
-        // Clear Redis first to avoid stale data
+        ProductConfigRedisIndex.Replacement replacement = redisIndex.beginReplacement();
         try {
-            redisRepository.deleteAll();
-            logger.info("Cleared existing Redis data before sync");
+            AtomicInteger changed = new AtomicInteger();
+            // The next view generation is fed batch by batch and swapped in at the end
+            ActiveProductViewService.Builder view = activeProductView.newBuilder();
+            long total = mongoStreamReader.forEachBatch(new Query(), ProductConfig.class, batch -> {
+                requireRelayLock(token);
+                changed.addAndGet(syncBatch(batch, replacement));
+                view.addAll(batch);
+            });
+
+            requireRelayLock(token);
+            // Upserts first, then the atomic index swap, then deletes: readers only
+            // ever see complete hashes, and the index never points at a stale entry
+            replacement.commit();
+            int deleted = deleteRemovedConfigs(token);
+            view.commit();
+
+            logger.info("Synchronized MongoDB to Redis in {} ms: {} configs, {} changed, {} deleted",
+                    System.currentTimeMillis() - startTime, total, changed.get(), deleted);
+            return changed.get() + deleted;
         } catch (Exception e) {
-            logger.error("Failed to clear Redis before sync: {}", e.getMessage());
+            replacement.discard();
+            logger.error("Incremental sync from MongoDB to Redis failed: {}", e.getMessage(), e);
+            return 0;
         }
+    }
+
+    private void requireRelayLock(String token) {
+        if (!lockService.extend(ProductConfigOutboxRelay.RELAY_LOCK, token, relayLockTtl)) {
+            throw new IllegalStateException("Lost the outbox relay lock during synchronization");
+        }
+    }
 
-        // Sync all configurations from MongoDB to Redis
-        for (ProductConfig mongoConfig : mongoConfigs) {
+    /**
+     * Waits up to redis.sync.lock-wait for the outbox relay lock and returns
+     * its token, or null if the relay kept it.
+     */
+    private String acquireRelayLock() {
+        long deadline = System.currentTimeMillis() + relayLockWaitMs;
+        while (true) {
+            String token = lockService.tryLock(ProductConfigOutboxRelay.RELAY_LOCK, relayLockTtl);
+            if (token != null || System.currentTimeMillis() >= deadline) {
+                return token;
+            }
             try {
-                ProductConfigRedis redisConfig = ProductConfigRedis.fromProductConfig(mongoConfig);
-                redisRepository.save(redisConfig);
-                syncCount++;
-            } catch (Exception e) {
-                logger.error("Failed to sync config ID {} to Redis: {}", mongoConfig.getId(), e.getMessage());
+                Thread.sleep(LOCK_POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
             }
         }
+    }
 
-        logger.info("Synchronized {} product configurations from MongoDB to Redis", syncCount);
-        return syncCount;
+    /**
+     * Writes the changed configurations of one cursor batch and stages the
+     * whole batch into the index replacement. Only the batch's fingerprints
+     * are read from Redis. Returns the number written.
+     */
+    private int syncBatch(List<ProductConfig> batch, ProductConfigRedisIndex.Replacement replacement) {
+        Map<String, String> redisFingerprints = fingerprintStore.findAll(batch.stream()
+                .map(ProductConfig::getId)
+                .filter(Objects::nonNull)
+                .toList());
+        List<ProductConfigRedis> redisConfigs = new ArrayList<>(batch.size());
+        List<ProductConfigRedis> changed = new ArrayList<>();
+        Map<String, String> changedFingerprints = new HashMap<>();
+        for (ProductConfig mongoConfig : batch) {
+            String id = mongoConfig.getId();
+            if (id == null) {
+                continue;
+            }
+            ProductConfigRedis redisConfig = ProductConfigRedis.fromProductConfig(mongoConfig);
+            redisConfigs.add(redisConfig);
+            String fingerprint = ProductConfigFingerprint.of(mongoConfig);
+            if (!fingerprint.equals(redisFingerprints.get(id))) {
+                changed.add(redisConfig);
+                changedFingerprints.put(id, fingerprint);
+            }
+        }
+        if (!changed.isEmpty()) {
+            redisRepository.saveAll(changed);
+        }
+        replacement.addAll(redisConfigs);
+        fingerprintStore.putAll(changedFingerprints);
+        return changed.size();
     }
 
     /**
-     * Retrieves the list of distinct active product IDs from Redis.
-     * If Redis is unavailable, falls back to MongoDB.
+     * Deletes the Redis entries of configurations MongoDB no longer has:
+     * stored hashes one SSCAN chunk at a time, then leftover fingerprints one
+     * bucket at a time, so no step holds every ID. Returns the number deleted.
+     */
+    private int deleteRemovedConfigs(String token) {
+        int batchSize = mongoStreamReader.getBatchSize();
+        AtomicInteger deleted = new AtomicInteger();
+        redisIndex.forEachIdChunk(batchSize, ids -> deleted.addAndGet(deleteMissingFromMongo(ids, token)));
+        for (int bucket = 0; bucket < ProductConfigFingerprint.BUCKET_COUNT; bucket++) {
+            List<String> ids = new ArrayList<>(fingerprintStore.findIdsInBucket(bucket));
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                deleted.addAndGet(deleteMissingFromMongo(ids.subList(from, Math.min(from + batchSize, ids.size())),
+                        token));
+            }
+        }
+        return deleted.get();
+    }
+
+    private int deleteMissingFromMongo(List<String> ids, String token) {
+        requireRelayLock(token);
+        Set<String> missing = new HashSet<>(ids);
+        Query existing = MongoStreamReader.projection("_id").addCriteria(Criteria.where("_id").in(ids));
+        try (Stream<ProductConfig> configs = mongoStreamReader.stream(existing, ProductConfig.class)) {
+            configs.forEach(config -> missing.remove(config.getId()));
+        }
+        if (!missing.isEmpty()) {
+            redisRepository.deleteAllById(missing);
+            fingerprintStore.removeAll(missing);
+        }
+        return missing.size();
+    }
+
+    /**
+     * Retrieves the list of distinct active product IDs from the in-process
+     * materialized view. Until the view has been loaded, reads go to Redis and
+     * fall back to MongoDB if Redis is unavailable.
      */
     public List<String> getDistinctActiveProductIds() {
+        if (activeProductView.isInitialized()) {
+            List<String> activeProductIds = activeProductView.getActiveProductIds();
+            logger.debug("Retrieved {} active product IDs from the in-process view", activeProductIds.size());
+            return activeProductIds;
+        }
+
         LocalDateTime now = LocalDateTime.now();
 
         try {
-            // First try to get data from Redis
-            List<String> activeProductIds = redisRepository.findActiveConfigurations(now).stream()
-                    .map(ProductConfigRedis::getProductId)
-                    .distinct()
-                    .collect(Collectors.toList());
+            // First try to get data from Redis in a single scripted round trip
+            List<String> activeProductIds = redisIndex.findActiveProductIds(now);
 
             if (!activeProductIds.isEmpty()) {
                 logger.debug("Retrieved {} active product IDs from Redis", activeProductIds.size());
@@ -171,14 +324,18 @@ public class ProductConfigDualWriteService {
             logger.error("Redis error, falling back to MongoDB: {}", e.getMessage());
         }
 
-        // Fallback to MongoDB
-        List<String> activeProductIds = mongoRepository.findAll().stream()
-                .filter(config -> config.isEnabled() &&
-                        config.getStartDate().isBefore(now) &&
-                        config.getEndDate().isAfter(now))
-                .map(ProductConfig::getProductId)
-                .distinct()
-                .collect(Collectors.toList());
+        // Fallback to MongoDB, streaming only the productId of active configurations
+        Query activeQuery = MongoStreamReader.projection("productId")
+                .addCriteria(Criteria.where("enabled").is(true)
+                        .and("startDate").lte(now)
+                        .and("endDate").gt(now));
+        List<String> activeProductIds;
+        try (Stream<ProductConfig> configs = mongoStreamReader.stream(activeQuery, ProductConfig.class)) {
+            activeProductIds = configs
+                    .map(ProductConfig::getProductId)
+                    .distinct()
+                    .collect(Collectors.toList());
+        }
 
         logger.debug("Retrieved {} active product IDs from MongoDB (fallback)", activeProductIds.size());
         return activeProductIds;
@@ -235,42 +392,19 @@ public class ProductConfigDualWriteService {
     }
 
     /**
-     * Verifies consistency between MongoDB and Redis.
-     * Returns true if all configurations match, false otherwise.
+     * Verifies consistency between MongoDB and Redis with a bucketed hash-tree
+     * comparison and reports every divergent configuration ID.
      */
-    public boolean verifyConsistency() {
+    public ConsistencyReport verifyConsistency() {
         logger.info("Verifying consistency between MongoDB and Redis");
-
-        List<ProductConfig> mongoConfigs = mongoRepository.findAll();
-        List<ProductConfigRedis> redisConfigs = StreamSupport
-                .stream(redisRepository.findAll().spliterator(), false)
-                .collect(Collectors.toList());
-
-        if (mongoConfigs.size() != redisConfigs.size()) {
-            logger.warn("Consistency check failed: MongoDB has {} configs, Redis has {}",
-                    mongoConfigs.size(), redisConfigs.size());
-            return false;
+        ConsistencyReport report = consistencyChecker.check();
+        if (report.isConsistent()) {
+            logger.info("Consistency check passed: MongoDB and Redis are in sync");
+        } else {
+            logger.warn("Consistency check failed: {} missing in Redis, {} missing in MongoDB, {} mismatched",
+                    report.getMissingInRedis().size(), report.getMissingInMongo().size(),
+                    report.getMismatched().size());
         }
-
-        for (ProductConfig mongoConfig : mongoConfigs) {
-            Optional<ProductConfigRedis> redisConfig = redisRepository.findById(mongoConfig.getId());
-
-            if (redisConfig.isEmpty()) {
-                logger.warn("Consistency check failed: Config ID {} exists in MongoDB but not in Redis",
-                        mongoConfig.getId());
-                return false;
-            }
-
-            ProductConfigRedis redisConfigData = redisConfig.get();
-            if (!mongoConfig.getProductId().equals(redisConfigData.getProductId()) ||
-                    mongoConfig.isEnabled() != redisConfigData.isEnabled()) {
-                logger.warn("Consistency check failed: Config ID {} has mismatched data between MongoDB and Redis",
-                        mongoConfig.getId());
-                return false;
-            }
-        }
-
-        logger.info("Consistency check passed: MongoDB and Redis are in sync");
-        return true;
+        return report;
     }
 }
\ No newline at end of file
@@ -0,0 +1,270 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ProductConfig;
+import com.example.demo.model.ProductConfigES;
+import com.example.demo.model.ProductConfigOutboxEvent;
+import com.example.demo.model.ProductConfigRedis;
+import com.example.demo.repository.ProductConfigESRepository;
+import com.example.demo.repository.ProductConfigFingerprintStore;
+import com.example.demo.repository.ProductConfigOutboxRepository;
+import com.example.demo.repository.ProductConfigRedisIndex;
+import com.example.demo.repository.ProductConfigRedisRepository;
+import com.example.demo.util.ProductConfigFingerprint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drains the product configuration outbox to Redis and Elasticsearch.
+ * Each sink has its own relay run, lock and delivery state on the event, so
+ * an Elasticsearch outage never delays Redis and vice versa. Per sink,
+ * events are applied strictly in order as idempotent upserts or deletes; a
+ * failing event blocks the ones behind it and is retried with exponential
+ * backoff until it is parked as FAILED. A Redis lock per sink keeps a single
+ * instance relaying at a time; each run stops after half the lock TTL so it
+ * never outlives the lock, and the next run picks up where it left off.
+ */
+@Service
+public class ProductConfigOutboxRelay {
+    private static final Logger logger = LoggerFactory.getLogger(ProductConfigOutboxRelay.class);
+
+    // Redis sink lock; also held by ProductConfigDualWriteService for a full MongoDB -> Redis sync
+    static final String RELAY_LOCK = "product-config-outbox-relay";
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+
+    enum Sink {
+        REDIS("redis", RELAY_LOCK),
+        ELASTICSEARCH("elasticsearch", RELAY_LOCK + ":elasticsearch");
+
+        private final String field;
+        private final String lock;
+
+        Sink(String field, String lock) {
+            this.field = field;
+            this.lock = lock;
+        }
+
+        ProductConfigOutboxEvent.Delivery deliveryOf(ProductConfigOutboxEvent event) {
+            return this == REDIS ? event.getRedis() : event.getElasticsearch();
+        }
+    }
+
+    private final ProductConfigOutboxRepository outboxRepository;
+    private final MongoTemplate mongoTemplate;
+    private final ProductConfigRedisRepository redisRepository;
+    private final ProductConfigRedisIndex redisIndex;
+    private final ProductConfigFingerprintStore fingerprintStore;
+    private final ProductConfigESRepository esRepository;
+    private final RedisLockService lockService;
+
+    @Value("${product.outbox.relay.batch-size:100}")
+    private int batchSize;
+
+    @Value("${product.outbox.relay.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${product.outbox.relay.lock-ttl:30000}")
+    private long lockTtlMs;
+
+    @Autowired
+    public ProductConfigOutboxRelay(ProductConfigOutboxRepository outboxRepository,
+            MongoTemplate mongoTemplate,
+            ProductConfigRedisRepository redisRepository,
+            ProductConfigRedisIndex redisIndex,
+            ProductConfigFingerprintStore fingerprintStore,
+            ProductConfigESRepository esRepository,
+            RedisLockService lockService) {
+        this.outboxRepository = outboxRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.redisRepository = redisRepository;
+        this.redisIndex = redisIndex;
+        this.fingerprintStore = fingerprintStore;
+        this.esRepository = esRepository;
+        this.lockService = lockService;
+    }
+
+    @Scheduled(fixedDelayString = "${product.outbox.relay.interval:1000}")
+    public void relayToRedis() {
+        relay(Sink.REDIS);
+    }
+
+    @Scheduled(fixedDelayString = "${product.outbox.relay.interval:1000}")
+    public void relayToElasticsearch() {
+        relay(Sink.ELASTICSEARCH);
+    }
+
+    /**
+     * Relays the sink's pending events until they are drained, an event
+     * fails or the run's time budget is spent.
+     */
+    private void relay(Sink sink) {
+        String token = lockService.tryLock(sink.lock, Duration.ofMillis(lockTtlMs));
+        if (token == null) {
+            return;
+        }
+        try {
+            int relayed = 0;
+            long startTime = System.currentTimeMillis();
+            // Batches are bounded by batch-size, so stopping at half the TTL keeps the last
+            // batch well inside the lock
+            long deadline = startTime + lockTtlMs / 2;
+            while (System.currentTimeMillis() < deadline) {
+                List<ProductConfigOutboxEvent> batch = findPending(sink);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                int processed = relayBatch(sink, batch);
+                relayed += processed;
+                if (processed < batch.size()) {
+                    break;
+                }
+            }
+            if (relayed > 0) {
+                logger.info("Relayed {} product config outbox events to {} in {} ms", relayed, sink.field,
+                        System.currentTimeMillis() - startTime);
+            }
+        } catch (Exception e) {
+            logger.error("Outbox relay to {} failed: {}", sink.field, e.getMessage(), e);
+        } finally {
+            lockService.unlock(sink.lock, token);
+        }
+    }
+
+    /**
+     * Counts of pending and parked events per sink, for diagnostics endpoints.
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("redisPending", outboxRepository.countByRedisStatus(ProductConfigOutboxEvent.Status.PENDING));
+        status.put("redisFailed", outboxRepository.countByRedisStatus(ProductConfigOutboxEvent.Status.FAILED));
+        status.put("elasticsearchPending",
+                outboxRepository.countByElasticsearchStatus(ProductConfigOutboxEvent.Status.PENDING));
+        status.put("elasticsearchFailed",
+                outboxRepository.countByElasticsearchStatus(ProductConfigOutboxEvent.Status.FAILED));
+        return status;
+    }
+
+    private List<ProductConfigOutboxEvent> findPending(Sink sink) {
+        PageRequest page = PageRequest.of(0, batchSize);
+        return sink == Sink.REDIS
+                ? outboxRepository.findByRedisStatusOrderByIdAsc(ProductConfigOutboxEvent.Status.PENDING, page)
+                : outboxRepository.findByElasticsearchStatusOrderByIdAsc(ProductConfigOutboxEvent.Status.PENDING,
+                        page);
+    }
+
+    /**
+     * Applies the batch to the sink in order and marks the applied events as
+     * delivered there. Returns the number of events applied before the first
+     * failure or backoff.
+     */
+    private int relayBatch(Sink sink, List<ProductConfigOutboxEvent> batch) {
+        LocalDateTime now = LocalDateTime.now();
+        List<String> applied = new ArrayList<>();
+        try {
+            for (ProductConfigOutboxEvent event : batch) {
+                ProductConfigOutboxEvent.Delivery delivery = sink.deliveryOf(event);
+                if (delivery.getNextAttemptAt() != null && delivery.getNextAttemptAt().isAfter(now)) {
+                    break;
+                }
+                try {
+                    apply(sink, event);
+                    applied.add(event.getId());
+                } catch (Exception e) {
+                    // Parked events no longer block the ones behind them
+                    if (recordFailure(sink, event, e)) {
+                        continue;
+                    }
+                    break;
+                }
+            }
+        } finally {
+            if (!applied.isEmpty()) {
+                markDelivered(sink, applied);
+            }
+        }
+        return applied.size();
+    }
+
+    private void apply(Sink sink, ProductConfigOutboxEvent event) {
+        switch (event.getOperation()) {
+            case UPSERT -> {
+                ProductConfig config = event.getPayload();
+                if (sink == Sink.REDIS) {
+                    ProductConfigRedis redisConfig = ProductConfigRedis.fromProductConfig(config);
+                    redisRepository.save(redisConfig);
+                    redisIndex.index(redisConfig);
+                    fingerprintStore.putAll(Map.of(config.getId(), ProductConfigFingerprint.of(config)));
+                } else {
+                    esRepository.save(ProductConfigES.fromProductConfig(config));
+                }
+            }
+            case DELETE -> {
+                if (sink == Sink.REDIS) {
+                    redisRepository.deleteById(event.getConfigId());
+                    redisIndex.remove(event.getConfigId());
+                    fingerprintStore.removeAll(List.of(event.getConfigId()));
+                } else {
+                    esRepository.deleteById(event.getConfigId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Flags the events as delivered to the sink with a field-level update, so
+     * the two relays never overwrite each other's state, then removes those
+     * that both sinks now have.
+     */
+    private void markDelivered(Sink sink, List<String> eventIds) {
+        mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(eventIds)),
+                new Update().set(sink.field + ".status", ProductConfigOutboxEvent.Status.DONE),
+                ProductConfigOutboxEvent.class);
+        mongoTemplate.remove(Query.query(Criteria.where("_id").in(eventIds)
+                .and("redis.status").is(ProductConfigOutboxEvent.Status.DONE)
+                .and("elasticsearch.status").is(ProductConfigOutboxEvent.Status.DONE)),
+                ProductConfigOutboxEvent.class);
+    }
+
+    /**
+     * Records a failed attempt for the sink and returns whether the event was
+     * parked as FAILED there.
+     */
+    private boolean recordFailure(Sink sink, ProductConfigOutboxEvent event, Exception e) {
+        int attempts = sink.deliveryOf(event).getAttempts() + 1;
+        Update update = new Update()
+                .set(sink.field + ".attempts", attempts)
+                .set(sink.field + ".lastError", e.getMessage());
+        boolean parked = attempts >= maxAttempts;
+        if (parked) {
+            update.set(sink.field + ".status", ProductConfigOutboxEvent.Status.FAILED);
+            logger.error("Outbox event {} for config {} failed {} times on {}, parking it: {}", event.getId(),
+                    event.getConfigId(), attempts, sink.field, e.getMessage());
+        } else {
+            Duration backoff = Duration.ofSeconds(1L << Math.min(attempts, 6));
+            if (backoff.compareTo(MAX_BACKOFF) > 0) {
+                backoff = MAX_BACKOFF;
+            }
+            update.set(sink.field + ".nextAttemptAt", LocalDateTime.now().plus(backoff));
+            logger.warn("Outbox event {} for config {} failed on {} (attempt {}), retrying in {} s: {}",
+                    event.getId(), event.getConfigId(), sink.field, attempts, backoff.toSeconds(), e.getMessage());
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(event.getId())), update,
+                ProductConfigOutboxEvent.class);
+        return parked;
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Order;
+import com.example.demo.model.ProductOrderSummary;
+import com.example.demo.repository.ProductOrderSummaryRepository;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Maintains product_order_summaries, one pre-aggregated document per product,
+ * so order statistics are a point read instead of a scan over the product's
+ * orders. Orders created through {@link OrderService#createOrder} update
+ * their summary, in the same transaction when transactions are enabled;
+ * the test data generators rebuild after bulk loads. On startup the
+ * summaries are rebuilt in the background when they do not account for every
+ * order, so a deployment onto existing orders does not serve empty stats,
+ * and a periodic check rebuilds them again when orders recorded during a
+ * rebuild were lost.
+ */
+@Service
+public class ProductOrderSummaryService {
+    private static final Logger logger = LoggerFactory.getLogger(ProductOrderSummaryService.class);
+
+    private static final String UNKNOWN_STATUS = "UNKNOWN";
+    private static final String ORDERS_COLLECTION = "orders";
+    private static final String SUMMARIES_COLLECTION = "product_order_summaries";
+
+    private final MongoTemplate mongoTemplate;
+    private final ProductOrderSummaryRepository summaryRepository;
+    private final boolean rebuildOnStartup;
+
+    // Orders minus summarized orders at the previous periodic check
+    private volatile long lastGap;
+
+    @Autowired
+    public ProductOrderSummaryService(MongoTemplate mongoTemplate,
+            ProductOrderSummaryRepository summaryRepository,
+            @Value("${order-summaries.rebuild-on-startup:true}") boolean rebuildOnStartup) {
+        this.mongoTemplate = mongoTemplate;
+        this.summaryRepository = summaryRepository;
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!rebuildOnStartup) {
+            return;
+        }
+        Thread thread = new Thread(this::rebuildIfStale, "order-summary-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Adds a newly created order to its product's summary with a single
+     * upsert, creating the summary on the product's first order.
+     */
+    public void recordOrder(Order order) {
+        if (order.getProductId() == null) {
+            return;
+        }
+        String status = order.getStatus() != null ? order.getStatus() : UNKNOWN_STATUS;
+        LocalDateTime orderDate = order.getOrderDate() != null ? order.getOrderDate() : order.getCreatedAt();
+        double amount = order.getAmount();
+
+        Update update = new Update()
+                .inc("orderCount", 1L)
+                .inc("totalAmount", amount)
+                .min("minAmount", amount)
+                .max("maxAmount", amount)
+                .inc("countByStatus." + status, 1L)
+                .inc("amountByStatus." + status, amount)
+                .set("updatedAt", LocalDateTime.now());
+        if (orderDate != null) {
+            update.max("lastOrderDate", orderDate);
+        }
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(order.getProductId())), update,
+                ProductOrderSummary.class);
+    }
+
+    public Optional<ProductOrderSummary> getSummary(String productId) {
+        return summaryRepository.findById(productId);
+    }
+
+    /**
+     * Rebuilds the summaries if the orders they count differ from the number
+     * of orders, which covers an empty summaries collection next to existing
+     * orders as well as orders loaded around {@link #recordOrder}. The order
+     * count comes from collection metadata, so the check itself is cheap.
+     * Returns whether a rebuild ran.
+     */
+    public boolean rebuildIfStale() {
+        try {
+            long gap = summaryGap();
+            if (gap == 0) {
+                logger.info("Product order summaries are up to date");
+                return false;
+            }
+            logger.info("Product order summaries are off by {} orders, rebuilding", gap);
+            rebuild();
+            return true;
+        } catch (Exception e) {
+            logger.error("Failed to check or rebuild product order summaries: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Periodically repairs summaries that missed orders, typically those
+     * recorded while a rebuild's $out replaced the collection. Only a gap
+     * that is unchanged since the previous check triggers a rebuild, so
+     * orders whose summary update is merely in flight do not.
+     */
+    @Scheduled(initialDelayString = "${order-summaries.stale-check-interval:300000}",
+            fixedDelayString = "${order-summaries.stale-check-interval:300000}")
+    public void repairIfStale() {
+        try {
+            long gap = summaryGap();
+            long previousGap = lastGap;
+            lastGap = gap;
+            if (gap != 0 && gap == previousGap) {
+                logger.warn("Product order summaries have been off by {} orders since the last check, rebuilding",
+                        gap);
+                rebuild();
+                lastGap = 0;
+            }
+        } catch (Exception e) {
+            logger.error("Failed to repair product order summaries: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Number of orders with a product minus the orders counted by the
+     * summaries. Orders without a product are never summarized; counting
+     * them is a productId index lookup.
+     */
+    private long summaryGap() {
+        long orders = mongoTemplate.getCollection(ORDERS_COLLECTION).estimatedDocumentCount()
+                - mongoTemplate.getCollection(ORDERS_COLLECTION).countDocuments(new Document("productId", null));
+        Document totals = mongoTemplate.getCollection(SUMMARIES_COLLECTION).aggregate(List.of(
+                new Document("$group", new Document("_id", null)
+                        .append("orderCount", new Document("$sum", "$orderCount"))))).first();
+        long summarized = totals != null ? ((Number) totals.get("orderCount")).longValue() : 0;
+        return orders - summarized;
+    }
+
+    /**
+     * Recomputes every summary from the orders collection in one server-side
+     * aggregation and swaps the result in with $out, so readers see either
+     * the old or the new collection. Orders recorded while the aggregation
+     * runs may be missing from the result; {@link #repairIfStale} rebuilds
+     * again once such a gap persists. Returns the number of summaries written.
+     */
+    @Scheduled(cron = "${order-summaries.rebuild-cron:-}")
+    public long rebuild() {
+        long startTime = System.currentTimeMillis();
+        Document statusKey = new Document("$ifNull", List.of("$_id.status", UNKNOWN_STATUS));
+        List<Document> pipeline = List.of(
+                new Document("$group", new Document("_id",
+                        new Document("productId", "$productId").append("status", "$status"))
+                        .append("count", new Document("$sum", 1L))
+                        .append("amount", new Document("$sum", "$amount"))
+                        .append("min", new Document("$min", "$amount"))
+                        .append("max", new Document("$max", "$amount"))
+                        .append("last", new Document("$max",
+                                new Document("$ifNull", List.of("$orderDate", "$createdAt"))))),
+                new Document("$match", new Document("_id.productId", new Document("$ne", null))),
+                new Document("$group", new Document("_id", "$_id.productId")
+                        .append("orderCount", new Document("$sum", "$count"))
+                        .append("totalAmount", new Document("$sum", "$amount"))
+                        .append("minAmount", new Document("$min", "$min"))
+                        .append("maxAmount", new Document("$max", "$max"))
+                        .append("lastOrderDate", new Document("$max", "$last"))
+                        .append("countByStatus", new Document("$push",
+                                new Document("k", statusKey).append("v", "$count")))
+                        .append("amountByStatus", new Document("$push",
+                                new Document("k", statusKey).append("v", "$amount")))),
+                new Document("$set", new Document("countByStatus", new Document("$arrayToObject", "$countByStatus"))
+                        .append("amountByStatus", new Document("$arrayToObject", "$amountByStatus"))
+                        .append("updatedAt", "$$NOW")),
+                new Document("$out", SUMMARIES_COLLECTION));
+
+        mongoTemplate.getCollection(ORDERS_COLLECTION).aggregate(pipeline).allowDiskUse(true).toCollection();
+
+        long summaries = mongoTemplate.getCollection(SUMMARIES_COLLECTION).estimatedDocumentCount();
+        logger.info("Rebuilt {} product order summaries in {} ms", summaries,
+                System.currentTimeMillis() - startTime);
+        return summaries;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.demo.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Short-lived distributed locks on Redis (SET NX PX). Each lock carries a
+ * random token and is only released by its owner, so a lock that expired and
+ * was re-acquired elsewhere is never deleted by the previous holder.
+ */
+@Service
+public class RedisLockService {
+    private static final Logger logger = LoggerFactory.getLogger(RedisLockService.class);
+
+    private static final String LOCK_KEY_PREFIX = "lock:";
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) else return 0 end",
+            Long.class);
+    private static final RedisScript<Long> EXTEND_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Autowired
+    public RedisLockService(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * Tries to acquire the lock without waiting. Returns the owner token, or
+     * null when the lock is held elsewhere. When Redis is unavailable the lock
+     * is treated as acquired so callers degrade to local-only coordination
+     * instead of blocking.
+     */
+    public String tryLock(String name, Duration ttl) {
+        String token = UUID.randomUUID().toString();
+        try {
+            Boolean acquired = redisTemplate.opsForValue().setIfAbsent(LOCK_KEY_PREFIX + name, token, ttl);
+            return Boolean.TRUE.equals(acquired) ? token : null;
+        } catch (Exception e) {
+            logger.warn("Could not acquire Redis lock {}, proceeding without it: {}", name, e.getMessage());
+            return token;
+        }
+    }
+
+    /**
+     * Resets the TTL of a lock that is still owned by the given token, for
+     * holders whose work outlasts a single TTL. Returns false when the lock
+     * has expired or is owned elsewhere. Like {@link #tryLock}, a Redis
+     * failure is treated as success.
+     */
+    public boolean extend(String name, String token, Duration ttl) {
+        try {
+            Long extended = redisTemplate.execute(EXTEND_SCRIPT, List.of(LOCK_KEY_PREFIX + name), token,
+                    String.valueOf(ttl.toMillis()));
+            return extended != null && extended == 1;
+        } catch (Exception e) {
+            logger.warn("Could not extend Redis lock {}, proceeding without it: {}", name, e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * Releases the lock if it is still owned by the given token.
+     */
+    public void unlock(String name, String token) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(LOCK_KEY_PREFIX + name), token);
+        } catch (Exception e) {
+            logger.warn("Could not release Redis lock {}: {}", name, e.getMessage());
+        }
+    }
+}
@@ -3,19 +3,25 @@ package com.example.demo.service;
 import com.example.demo.model.ProductConfig;
 import com.example.demo.model.ProductConfigES;
 import com.example.demo.model.ProductConfigRedis;
+import com.example.demo.repository.MongoStreamReader;
 import com.example.demo.repository.ProductConfigESRepository;
+import com.example.demo.repository.ProductConfigFingerprintStore;
+import com.example.demo.repository.ProductConfigRedisIndex;
 import com.example.demo.repository.ProductConfigRedisRepository;
-import com.example.demo.repository.ProductConfigRepository;
+import com.example.demo.util.ProductConfigFingerprint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -26,18 +32,24 @@ public class RedisProductService {
     private static final Logger logger = LoggerFactory.getLogger(RedisProductService.class);
 
     private final ProductConfigRedisRepository redisRepository;
-    private final ProductConfigRepository mongoRepository;
+    private final ProductConfigRedisIndex redisIndex;
+    private final ProductConfigFingerprintStore fingerprintStore;
+    private final MongoStreamReader mongoStreamReader;
     private final ProductConfigESRepository elasticsearchRepository;
     private final RedisTemplate<String, Object> redisTemplate;
 
     @Autowired
     public RedisProductService(
             ProductConfigRedisRepository redisRepository,
-            ProductConfigRepository mongoRepository,
+            ProductConfigRedisIndex redisIndex,
+            ProductConfigFingerprintStore fingerprintStore,
+            MongoStreamReader mongoStreamReader,
             ProductConfigESRepository elasticsearchRepository,
             RedisTemplate<String, Object> redisTemplate) {
         this.redisRepository = redisRepository;
-        this.mongoRepository = mongoRepository;
+        this.redisIndex = redisIndex;
+        this.fingerprintStore = fingerprintStore;
+        this.mongoStreamReader = mongoStreamReader;
         this.elasticsearchRepository = elasticsearchRepository;
         this.redisTemplate = redisTemplate;
     }
@@ -62,66 +74,85 @@ public class RedisProductService {
     // Get all active product configurations (that are valid for the current time)
     public List<ProductConfigRedis> getActiveProductConfigs() {
         LocalDateTime now = LocalDateTime.now();
-        return redisRepository.findActiveConfigurations(now);
+        return StreamSupport
+                .stream(redisRepository.findAllById(redisIndex.findActiveIds(now)).spliterator(), false)
+                .collect(Collectors.toList());
     }
 
-    // Get distinct active product IDs
+    // Get distinct active product IDs (single round trip via the preloaded Lua script)
     public List<String> getDistinctActiveProductIds() {
-        LocalDateTime now = LocalDateTime.now();
-        return redisRepository.findActiveConfigurations(now).stream()
-                .map(ProductConfigRedis::getProductId)
-                .distinct()
-                .collect(Collectors.toList());
+        return redisIndex.findActiveProductIds(LocalDateTime.now());
     }
 
     // Save a new product configuration
+    // Direct writes drop the entry's fingerprint so the next MongoDB diff sync re-checks it
     public ProductConfigRedis saveProductConfig(ProductConfigRedis config) {
-        return redisRepository.save(config);
+        ProductConfigRedis saved = redisRepository.save(config);
+        redisIndex.index(saved);
+        fingerprintStore.removeAll(List.of(saved.getId()));
+        return saved;
     }
 
     // Update an existing product configuration
     public ProductConfigRedis updateProductConfig(String id, ProductConfigRedis config) {
         config.setId(id);
-        return redisRepository.save(config);
+        ProductConfigRedis saved = redisRepository.save(config);
+        redisIndex.index(saved);
+        fingerprintStore.removeAll(List.of(id));
+        return saved;
     }
 
     // Delete a product configuration
     public void deleteProductConfig(String id) {
         redisRepository.deleteById(id);
+        redisIndex.remove(id);
+        fingerprintStore.removeAll(List.of(id));
     }
 
     // Delete all configurations for a product
     public void deleteProductConfigurations(String productId) {
+        List<String> ids = redisRepository.findByProductId(productId).stream()
+                .map(ProductConfigRedis::getId)
+                .collect(Collectors.toList());
         redisRepository.deleteByProductId(productId);
+        redisIndex.removeAll(ids);
+        fingerprintStore.removeAll(ids);
     }
 
-    // Synchronize data from MongoDB to Redis
+    // Synchronize data from MongoDB to Redis, reading MongoDB through a cursor batch by batch
     public int syncFromMongoDB() {
         logger.info("Starting synchronization from MongoDB to Redis");
-        List<ProductConfig> mongoConfigs = mongoRepository.findAll();
-        int count = 0;
-
-        for (ProductConfig mongoConfig : mongoConfigs) {
-            ProductConfigRedis redisConfig = ProductConfigRedis.fromProductConfig(mongoConfig);
-            redisRepository.save(redisConfig);
-            count++;
-        }
+        long count = mongoStreamReader.forEachBatch(new Query(), ProductConfig.class, mongoConfigs -> {
+            List<ProductConfigRedis> redisConfigs = new ArrayList<>(mongoConfigs.size());
+            Map<String, String> fingerprints = new HashMap<>();
+            for (ProductConfig mongoConfig : mongoConfigs) {
+                redisConfigs.add(ProductConfigRedis.fromProductConfig(mongoConfig));
+                fingerprints.put(mongoConfig.getId(), ProductConfigFingerprint.of(mongoConfig));
+            }
+            redisRepository.saveAll(redisConfigs);
+            redisIndex.indexAll(redisConfigs);
+            fingerprintStore.putAll(fingerprints);
+        });
 
         logger.info("Synchronized {} product configurations from MongoDB to Redis", count);
-        return count;
+        return (int) count;
     }
 
     // Synchronize data from Elasticsearch to Redis
     public int syncFromElasticsearch() {
         logger.info("Starting synchronization from Elasticsearch to Redis");
         Iterable<ProductConfigES> esConfigs = elasticsearchRepository.findAll();
+        List<ProductConfigRedis> redisConfigs = new ArrayList<>();
         int count = 0;
 
         for (ProductConfigES esConfig : esConfigs) {
             ProductConfigRedis redisConfig = ProductConfigRedis.fromProductConfigES(esConfig);
             redisRepository.save(redisConfig);
+            redisConfigs.add(redisConfig);
             count++;
         }
+        redisIndex.indexAll(redisConfigs);
+        fingerprintStore.removeAll(redisConfigs.stream().map(ProductConfigRedis::getId).collect(Collectors.toList()));
 
         logger.info("Synchronized {} product configurations from Elasticsearch to Redis", count);
         return count;
@@ -130,6 +161,8 @@ public class RedisProductService {
     // Clear all product configurations from Redis
     public void clearAllProductConfigs() {
         redisRepository.deleteAll();
+        redisIndex.clear();
+        fingerprintStore.clear();
         logger.info("Cleared all product configurations from Redis");
     }
 }
\ No newline at end of file
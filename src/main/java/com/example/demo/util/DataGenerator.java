@@ -11,15 +11,18 @@ import org.springframework.stereotype.Component;
 
 import com.example.demo.model.Order;
 import com.example.demo.model.ProductConfig;
+import com.example.demo.service.ProductOrderSummaryService;
 
 @Component
 public class DataGenerator implements CommandLineRunner {
 
     private final MongoTemplate mongoTemplate;
+    private final ProductOrderSummaryService summaryService;
     private final Random random = new Random();
 
-    public DataGenerator(MongoTemplate mongoTemplate) {
+    public DataGenerator(MongoTemplate mongoTemplate, ProductOrderSummaryService summaryService) {
         this.mongoTemplate = mongoTemplate;
+        this.summaryService = summaryService;
     }
 
     @Override
@@ -46,6 +49,9 @@ public class DataGenerator implements CommandLineRunner {
             mongoTemplate.insertAll(orderBatch);
             System.out.println("Generated " + (i + currentBatchSize) + " orders");
         }
+
+        // Bulk inserts bypass the per-order summary update
+        summaryService.rebuild();
     }
 
     private List<ProductConfig> generateProductConfigs(int count) {
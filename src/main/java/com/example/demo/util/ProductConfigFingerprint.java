@@ -0,0 +1,108 @@
+package com.example.demo.util;
+
+import com.example.demo.model.ProductConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Content fingerprints of product configurations, used to detect which
+ * entries differ between MongoDB and Redis without comparing full documents.
+ * Fingerprints are grouped into a fixed number of buckets by configuration ID.
+ */
+public final class ProductConfigFingerprint {
+
+    public static final int BUCKET_COUNT = 64;
+
+    private ProductConfigFingerprint() {
+    }
+
+    /**
+     * Returns a short hex digest over the replicated fields of the configuration.
+     */
+    public static String of(ProductConfig config) {
+        return fingerprint(config.getProductId(), config.isEnabled(),
+                String.valueOf(config.getStartDate()), String.valueOf(config.getEndDate()));
+    }
+
+    /**
+     * Returns the fingerprint of a configuration from the raw fields of its
+     * Redis hash, matching {@link #of(ProductConfig)} for the same content.
+     */
+    public static String ofStoredFields(String productId, String enabled, String startDate, String endDate) {
+        return fingerprint(String.valueOf(productId), "1".equals(enabled) || "true".equals(enabled),
+                String.valueOf(startDate), String.valueOf(endDate));
+    }
+
+    private static String fingerprint(String productId, boolean enabled, String startDate, String endDate) {
+        String content = productId + '|' + enabled + '|' + startDate + '|' + endDate;
+        return HexFormat.of().formatHex(sha1(content), 0, 8);
+    }
+
+    /**
+     * Returns the bucket the configuration ID belongs to.
+     */
+    public static int bucketOf(String configId) {
+        return bucketOf(configId, BUCKET_COUNT);
+    }
+
+    /**
+     * Returns the bucket the configuration ID belongs to out of
+     * {@code bucketCount} buckets.
+     */
+    public static int bucketOf(String configId, int bucketCount) {
+        return Math.floorMod(configId.hashCode(), bucketCount);
+    }
+
+    /**
+     * Order-independent digest of the (ID, fingerprint) pairs in one bucket:
+     * an entry count plus the XOR of the first 64 bits of SHA-1("id:fingerprint")
+     * of every entry, so partial digests computed in chunks can be merged.
+     */
+    public static final class BucketDigest {
+        private long count;
+        private int high;
+        private int low;
+
+        public void add(String configId, String fingerprint) {
+            byte[] digest = sha1(configId + ':' + fingerprint);
+            merge(1, toInt(digest, 0), toInt(digest, 4));
+        }
+
+        public void merge(long count, int high, int low) {
+            this.count += count;
+            this.high ^= high;
+            this.low ^= low;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof BucketDigest that
+                    && count == that.count && high == that.high && low == that.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(count) * 31 * 31 + high * 31 + low;
+        }
+
+        private static int toInt(byte[] bytes, int offset) {
+            return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16)
+                    | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+        }
+    }
+
+    private static byte[] sha1(String content) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(content.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.example.demo.model.Order;
 import com.example.demo.model.ProductConfig;
 import com.example.demo.repository.OrderRepository;
 import com.example.demo.repository.ProductConfigRepository;
+import com.example.demo.service.ProductOrderSummaryService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -20,6 +21,9 @@ public class TestDataGenerator {
     @Autowired
     private ProductConfigRepository productConfigRepository;
 
+    @Autowired
+    private ProductOrderSummaryService summaryService;
+
     private final Random random = new Random();
 
     public void generateTestData(int numOrders) {
@@ -34,6 +38,9 @@ public class TestDataGenerator {
             orders.add(order);
         }
         orderRepository.saveAll(orders);
+
+        // Bulk inserts bypass the per-order summary update
+        summaryService.rebuild();
     }
 
     private List<ProductConfig> generateProductConfigs() {
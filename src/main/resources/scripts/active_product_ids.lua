@@ -0,0 +1,21 @@
+-- Resolves the distinct productIds of active product configurations in one call.
+-- KEYS[1] = startDate index (zset), KEYS[2] = endDate index (zset), KEYS[3] = enabled IDs (set),
+-- KEYS[4] = config ID -> productId (hash); all share one hash tag so they live in the same slot
+-- ARGV[1] = now as epoch millis
+-- Walks the configs that have not ended yet (the endDate index is pruned of ended ones),
+-- so the work is bounded by live and upcoming windows rather than every config ever started.
+local now = tonumber(ARGV[1])
+local notEnded = redis.call('ZRANGEBYSCORE', KEYS[2], '(' .. now, '+inf')
+local seen = {}
+local productIds = {}
+for _, id in ipairs(notEnded) do
+    local startScore = redis.call('ZSCORE', KEYS[1], id)
+    if startScore and tonumber(startScore) <= now and redis.call('SISMEMBER', KEYS[3], id) == 1 then
+        local productId = redis.call('HGET', KEYS[4], id)
+        if productId and not seen[productId] then
+            seen[productId] = true
+            productIds[#productIds + 1] = productId
+        end
+    end
+end
+return productIds
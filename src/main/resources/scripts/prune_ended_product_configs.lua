@@ -0,0 +1,13 @@
+-- Removes configurations whose window has ended from the time index, at most ARGV[2] per call.
+-- KEYS[1] = startDate index (zset), KEYS[2] = endDate index (zset), KEYS[3] = enabled IDs (set),
+-- KEYS[4] = config ID -> productId (hash)
+-- ARGV[1] = now as epoch millis (endDate is exclusive, so a window ending at now has ended),
+-- ARGV[2] = maximum number of configurations to remove
+local ended = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2]))
+for _, id in ipairs(ended) do
+    redis.call('ZREM', KEYS[1], id)
+    redis.call('ZREM', KEYS[2], id)
+    redis.call('SREM', KEYS[3], id)
+    redis.call('HDEL', KEYS[4], id)
+end
+return #ended